@@ -0,0 +1,139 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.metrics.EndpointMetrics;
+import com.reactivespring.service.MovieInfoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.validation.beanvalidation.OptionalValidatorFactoryBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Full request path through MoviesInfoController - routing, codecs, validation and GlobalErrorHandler -
+ * against a stubbed MovieInfoService, so no mongo round trip is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MoviesInfoControllerBenchmark {
+
+    static String MOVIES_URL = "/v1/movieinfos";
+
+    @Param({"100"})
+    int movieInfoCount;
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    MovieInfo invalidMovieInfo = new MovieInfo(null, "",
+            -2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+
+    GlobalErrorHandler globalErrorHandler = new GlobalErrorHandler();
+
+    WebTestClient webTestClient;
+
+    @Setup
+    public void setUp() {
+        var movieInfos = IntStream.range(0, movieInfoCount)
+                .mapToObj(i -> new MovieInfo("id" + i, "Movie " + i,
+                        2000 + i % 20, List.of("Christian Bale"), LocalDate.parse("2005-06-15")))
+                .collect(Collectors.toList());
+
+        var validator = new OptionalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+
+        webTestClient = WebTestClient
+                // no Idempotency-Key is sent, the idempotency store is never reached
+                .bindToController(new MoviesInfoController(new StubMovieInfoService(movieInfo, movieInfos),
+                        new IdempotencyService(null, null, 1_000, 0.01, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                        new EndpointMetrics(new SimpleMeterRegistry(), 0)))
+                .validator(validator)
+                // as the application context would, the error handler sees what the handlers fail with
+                .webFilter((exchange, chain) -> chain.filter(exchange)
+                        .onErrorResume(ex -> globalErrorHandler.handle(exchange, ex)))
+                .build();
+    }
+
+    @Benchmark
+    public MovieInfo getMovieInfoById() {
+        return webTestClient.get()
+                .uri(MOVIES_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public List<MovieInfo> getAllMovieInfos() {
+        return webTestClient.get()
+                .uri(MOVIES_URL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public MovieInfo addMovieInfo() {
+        return webTestClient.post()
+                .uri(MOVIES_URL)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public String addMovieInfo_invalid() {
+        return webTestClient.post()
+                .uri(MOVIES_URL)
+                .bodyValue(invalidMovieInfo)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    static class StubMovieInfoService extends MovieInfoService {
+
+        private final MovieInfo movieInfo;
+        private final List<MovieInfo> movieInfos;
+
+        StubMovieInfoService(MovieInfo movieInfo, List<MovieInfo> movieInfos) {
+            this.movieInfo = movieInfo;
+            this.movieInfos = movieInfos;
+        }
+
+        @Override
+        public Mono<MovieInfo> getMovieInfoById(String id) {
+            return Mono.just(movieInfo);
+        }
+
+        @Override
+        public Flux<MovieInfo> getAll() {
+            return Flux.fromIterable(movieInfos);
+        }
+
+        @Override
+        public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
+            return Mono.just(movieInfo);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encode / decode of one MovieInfo, in each format the codecs negotiate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MovieInfoSerializationBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+            2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    ObjectWriter writer;
+    ObjectReader reader;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        var builder = format.equals("smile") ? Jackson2ObjectMapperBuilder.smile()
+                : format.equals("cbor") ? Jackson2ObjectMapperBuilder.cbor()
+                : Jackson2ObjectMapperBuilder.json();
+        // as configured by spring boot
+        var objectMapper = builder.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        writer = objectMapper.writerFor(MovieInfo.class);
+        reader = objectMapper.readerFor(MovieInfo.class);
+        encoded = writer.writeValueAsBytes(movieInfo);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(movieInfo);
+    }
+
+    @Benchmark
+    public MovieInfo decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.domain;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation of the MovieInfo constraints, as run for @Valid request bodies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MovieInfoValidationBenchmark {
+
+    MovieInfo valid = new MovieInfo(null, "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    MovieInfo invalid = new MovieInfo(null, "",
+            -2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+
+    Validator validator;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MovieInfo>> validate_valid() {
+        return validator.validate(valid);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MovieInfo>> validate_invalid() {
+        return validator.validate(invalid);
+    }
+}
@@ -0,0 +1,80 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.controller.MoviesInfoController;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.IdempotencyConflictException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error status and body written to a mock exchange, with the exception already built - logging is switched off
+ * in src/jmh/resources/logback.xml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GlobalErrorHandlerBenchmark {
+
+    GlobalErrorHandler globalErrorHandler = new GlobalErrorHandler();
+
+    WebExchangeBindException bindException;
+    ConstraintViolationException constraintViolationException;
+    OptimisticLockingFailureException versionConflict =
+            new OptimisticLockingFailureException("movieInfo abc was updated concurrently, version 1 is stale");
+    IdempotencyConflictException idempotencyConflict =
+            new IdempotencyConflictException("A request with this Idempotency-Key is still in progress : abc");
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        var movieInfo = new MovieInfo(null, "", -2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+
+        var bindingResult = new BeanPropertyBindingResult(movieInfo, "movieInfo");
+        bindingResult.rejectValue("name", "NotBlank", "movieInfo.name must be present");
+        bindingResult.rejectValue("year", "Positive", "movieInfo.year must be positive");
+        var addMovieInfo = MoviesInfoController.class.getMethod("addMovieInfo", MovieInfo.class, String.class,
+                ServerHttpResponse.class);
+        bindException = new WebExchangeBindException(new MethodParameter(addMovieInfo, 0), bindingResult);
+
+        var violations = Validation.buildDefaultValidatorFactory().getValidator().validate(movieInfo);
+        constraintViolationException = new ConstraintViolationException(violations);
+    }
+
+    @Benchmark
+    public MockServerHttpResponse handleRequestBodyError() {
+        return handle(bindException);
+    }
+
+    @Benchmark
+    public MockServerHttpResponse handleConstraintViolation() {
+        return handle(constraintViolationException);
+    }
+
+    @Benchmark
+    public MockServerHttpResponse handleVersionConflict() {
+        return handle(versionConflict);
+    }
+
+    @Benchmark
+    public MockServerHttpResponse handleStackless() {
+        return handle(idempotencyConflict);
+    }
+
+    private MockServerHttpResponse handle(Throwable ex) {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/v1/movieinfos"));
+        globalErrorHandler.handle(exchange, ex).block();
+        return exchange.getResponse();
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of MovieInfoRepository.findById
+ */
+@Component
+public class MovieInfoCache {
+
+    static final String CACHE_NAME = "movieInfoById";
+
+    private final AsyncCache<String, MovieInfo> cache;
+
+    public MovieInfoCache(@Value("${movieinfo.cache.maximum-size:10000}") long maximumSize,
+                          @Value("${movieinfo.cache.ttl:10m}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size on /actuator/metrics
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+    }
+
+    /**
+     * Concurrent misses on the same id share one in-flight load.
+     * An empty load is not cached
+     */
+    public Mono<MovieInfo> get(String id, Function<String, Mono<MovieInfo>> loader) {
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()));
+    }
+
+    /**
+     * Called once the write has completed. Removes the mapping whether it holds a loaded document or a load still
+     * in flight - a load that read the document before the write then completes for its own callers only,
+     * it is not cached
+     */
+    public void invalidate(String id) {
+        cache.asMap().remove(id);
+    }
+}
@@ -1,32 +1,30 @@
 package com.reactivespring.controller;
 
-import lombok.Getter;
-import org.springframework.http.MediaType;
+import com.reactivespring.metrics.EndpointMetrics;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
-
 @RestController
 public class FluxAndMonoController {
+
+    private EndpointMetrics endpointMetrics;
+
+    public FluxAndMonoController(EndpointMetrics endpointMetrics) {
+        this.endpointMetrics = endpointMetrics;
+    }
+
     @GetMapping("/flux")
     public Flux<Integer> flux(){
         return Flux.just(1, 2, 3)
-                .log();
+                .transform(endpointMetrics.flux("flux"));
     }
 
     @GetMapping("/mono")
     public Mono<String> mono(){
         return Mono.just("Hello world")
-                .log();
-    }
-
-    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Long> stream(){
-        return Flux.interval(Duration.ofSeconds(1))
-                .log();
+                .transform(endpointMetrics.mono("mono"));
     }
 
 }
@@ -1,14 +1,25 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.config.CodecConfig;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.idempotency.IdempotentResult;
+import com.reactivespring.metrics.EndpointMetrics;
+import com.reactivespring.service.MovieInfoProjection;
 import com.reactivespring.service.MovieInfoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.List;
 
 @RestController
 @RequestMapping("/v1")
@@ -17,34 +28,125 @@ public class MoviesInfoController {
 
     private MovieInfoService movieInfoService;
 
-    public MoviesInfoController(MovieInfoService movieInfoService) {
+    private IdempotencyService idempotencyService;
+
+    private EndpointMetrics endpointMetrics;
+
+    public MoviesInfoController(MovieInfoService movieInfoService, IdempotencyService idempotencyService,
+                                EndpointMetrics endpointMetrics) {
         this.movieInfoService = movieInfoService;
+        this.idempotencyService = idempotencyService;
+        this.endpointMetrics = endpointMetrics;
     }
 
+    /**
+     * A retry with the Idempotency-Key of an earlier create gets that create's response, marked Idempotent-Replayed
+     */
     @PostMapping("/movieinfos")
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo){
-        return movieInfoService.addMovieInfo(movieInfo).log();
+    public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo,
+                                        @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                        ServerHttpResponse response){
+        if (idempotencyKey == null) {
+            return movieInfoService.addMovieInfo(movieInfo).transform(endpointMetrics.mono("addMovieInfo"));
+        }
+        return idempotencyService.execute(idempotencyKey, movieInfo, HttpStatus.CREATED.value(),
+                        () -> movieInfoService.addMovieInfo(movieInfo))
+                .doOnNext(result -> {
+                    if (result.isReplayed()) {
+                        response.getHeaders().set(IdempotencyService.IDEMPOTENT_REPLAYED, "true");
+                    }
+                })
+                .map(IdempotentResult::getResponse)
+                .transform(endpointMetrics.mono("addMovieInfo"));
+    }
+
+    /**
+     * Bulk load - each element is validated on its own, so one bad record only fails its own result
+     */
+    @PostMapping(value = "/movieinfos/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoBatchResult> addMovieInfos(@RequestBody Flux<MovieInfo> movieInfos){
+        return movieInfoService.addMovieInfos(movieInfos).transform(endpointMetrics.flux("addMovieInfos"));
+    }
+
+    /**
+     * application/x-ndjson streams each document as it is read, instead of one JSON array.
+     * year, name (prefix) and cast filter on indexed fields; limit/after page through the result, filtered or not.
+     * ids (comma separated, at most 100) reads the given movie infos in one query.
+     * fields is a comma separated list of the MovieInfo fields to return
+     */
+    @GetMapping(value = "/movieinfos", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, CodecConfig.APPLICATION_SMILE_VALUE})
+    public Flux<MovieInfo> getAllMoviesInfos(@RequestParam(value = "limit", required = false) Integer limit,
+                                             @RequestParam(value = "after", required = false) String after,
+                                             @RequestParam(value = "year", required = false) Integer year,
+                                             @RequestParam(value = "name", required = false) String name,
+                                             @RequestParam(value = "cast", required = false) String cast,
+                                             @RequestParam(value = "ids", required = false) List<String> ids,
+                                             @RequestParam(value = "fields", required = false) String fields){
+        var projection = MovieInfoProjection.parse(fields);
+        if (ids != null) {
+            return movieInfoService.getMovieInfosByIds(ids, projection)
+                    .transform(endpointMetrics.flux("getMovieInfosByIds"));
+        }
+        if (projection != null || year != null || name != null || cast != null) {
+            return movieInfoService.getMovieInfos(limit, after, year, name, cast, projection)
+                    .transform(endpointMetrics.flux("getAllMovieInfos"));
+        }
+        if (limit == null && after == null) {
+            return movieInfoService.getAll().transform(endpointMetrics.flux("getAllMovieInfos"));
+        }
+        return movieInfoService.getAll(limit, after).transform(endpointMetrics.flux("getAllMovieInfos"));
+    }
+
+    /**
+     * Push feed of MovieInfo creates, updates and deletes. Reconnecting clients send Last-Event-ID to get what they missed
+     */
+    @GetMapping(value = "/movieinfos/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfoEvent>> streamMovieInfos(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId){
+        return movieInfoService.getMovieInfoEvents(parseEventId(lastEventId))
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.getId()))
+                        .event(event.getType().name())
+                        .build());
     }
 
-    @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMoviesInfos(){
-        return movieInfoService.getAll().log();
+    private static Long parseEventId(String lastEventId) {
+        try {
+            return lastEventId == null ? null : Long.valueOf(lastEventId.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
     }
 
     @GetMapping("/movieinfos/{id}")
-    public Mono<MovieInfo> getMovieInfoById(@PathVariable String id){
-        return movieInfoService.getMovieInfoById(id).log();
+    public Mono<MovieInfo> getMovieInfoById(@PathVariable String id,
+                                            @RequestParam(value = "fields", required = false) String fields){
+        var projection = MovieInfoProjection.parse(fields);
+        if (projection != null) {
+            return movieInfoService.getMovieInfoById(id, projection)
+                    .transform(endpointMetrics.mono("getMovieInfoById"));
+        }
+        return movieInfoService.getMovieInfoById(id).transform(endpointMetrics.mono("getMovieInfoById"));
     }
 
     @PutMapping("/movieinfos/{id}")
     public Mono<MovieInfo> updateMovieInfo(@RequestBody MovieInfo updatedMovieInfo, @PathVariable String id){
-        return movieInfoService.updateMovieInfo(id, updatedMovieInfo).log();
+        return movieInfoService.updateMovieInfo(id, updatedMovieInfo)
+                .transform(endpointMetrics.mono("updateMovieInfo"));
+    }
+
+    @PatchMapping("/movieinfos/{id}")
+    public Mono<MovieInfo> patchMovieInfo(@RequestBody MovieInfo movieInfoPatch, @PathVariable String id){
+        return movieInfoService.patchMovieInfo(id, movieInfoPatch)
+                .transform(endpointMetrics.mono("patchMovieInfo"));
     }
 
     @DeleteMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteMovieById(@PathVariable String id){
-        return movieInfoService.deleteMovieInfo(id).log();
+        return movieInfoService.deleteMovieInfo(id).transform(endpointMetrics.mono("deleteMovieInfo"));
     }
 }
@@ -1,9 +1,12 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -16,14 +19,24 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document // entity
+@JsonInclude(JsonInclude.Include.NON_NULL) // fields left out by a ?fields= projection are not written
 public class MovieInfo {
     @Id
     private String movieInfoId;
     @NotBlank(message="movieInfo.name must be present")
+    @Indexed // name prefix queries
     private String name;
     @NotNull(message = "movieInfo.year must not be null")
     @Positive(message = "movieInfo.year must be positive")
+    @Indexed
     private Integer year;
+    @Indexed // multikey - one entry per cast member
     private List<String> cast;
     private LocalDate release_date;
+    @Version // optimistic concurrency - send it back on PUT/PATCH to reject stale updates with 409
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate release_date) {
+        this(movieInfoId, name, year, cast, release_date, null);
+    }
 }
@@ -0,0 +1,18 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one element of a POST /v1/movieinfos/batch request, in request order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoBatchResult {
+    private Long index;
+    private String movieInfoId;
+    private Integer status; // 201 created, 400 invalid, 409 duplicate id, 500 write failed
+    private String error;
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change on the /v1/movieinfos/stream feed. id is the SSE event id clients send back as Last-Event-ID
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoEvent {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private Long id;
+    private Type type;
+    private String movieInfoId;
+    private MovieInfo movieInfo; // null for DELETED
+}
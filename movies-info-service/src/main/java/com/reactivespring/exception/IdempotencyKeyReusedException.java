@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class IdempotencyKeyReusedException extends StacklessException {
+    private String message;
+    public IdempotencyKeyReusedException(String s) {
+        super(s, HttpStatus.UNPROCESSABLE_ENTITY.value());
+        this.message=s;
+    }
+}
@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class MovieInfoDataException extends StacklessException {
+    private String message;
+    public MovieInfoDataException(String s) {
+        super(s, HttpStatus.BAD_REQUEST.value());
+        this.message=s;
+    }
+}
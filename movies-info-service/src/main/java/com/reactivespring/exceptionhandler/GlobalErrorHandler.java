@@ -1,34 +1,98 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.StacklessException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.ControllerAdvice;
-import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * When an error occurs, run through this first
+ * When an error occurs, run through this first - ahead of spring boot's default handler.
+ * The expected errors - the service's own StacklessExceptions, Bean Validation failures and stale versions -
+ * are answered with their status and message and not logged, EndpointMetrics counts them. Only a 5xx that is
+ * not one of them is logged, with its stack trace, and answered with the reason phrase alone
  */
-@ControllerAdvice
+@Component
+@Order(-2)
 @Slf4j // logs errors
-public class GlobalErrorHandler {
+public class GlobalErrorHandler implements ErrorWebExceptionHandler {
 
-    /**
-     * Exception for Bean Validation
-     */
-    @ExceptionHandler(WebExchangeBindException.class)
-    public ResponseEntity<String> handleRequestBodyError(WebExchangeBindException ex) {
-        log.error("Exception: {} ", ex.getMessage(), ex);
-        var error = ex.getBindingResult().getAllErrors().stream()
-                .map(DefaultMessageSourceResolvable::getDefaultMessage)
-                .sorted()
-                .collect(Collectors.joining(","));
-        log.error(error);
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    // bodies of the errors without a message of their own (an unknown route is a 404 "Not Found"), encoded once
+    private static final Map<HttpStatus, byte[]> REASON_PHRASES = new EnumMap<>(HttpStatus.class);
+
+    static {
+        for (var status : HttpStatus.values()) {
+            REASON_PHRASES.put(status, status.getReasonPhrase().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        var response = exchange.getResponse();
+        if (response.isCommitted()) {
+            // a streamed body failed part way - status and headers are already out, leave it to the server
+            return Mono.error(ex);
+        }
+        byte[] body;
+        if (ex instanceof StacklessException) {
+            // bad input, a retry arriving while the request with the same Idempotency-Key is still running ...
+            var expected = (StacklessException) ex;
+            response.setRawStatusCode(expected.getStatus());
+            body = expected.getBody();
+        } else if (ex instanceof WebExchangeBindException) {
+            // Bean Validation of a request body
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            body = encode(((WebExchangeBindException) ex).getBindingResult().getAllErrors().stream()
+                    .map(DefaultMessageSourceResolvable::getDefaultMessage)
+                    .sorted()
+                    .collect(Collectors.joining(",")));
+        } else if (ex instanceof ConstraintViolationException) {
+            // Bean Validation of PATCH fields
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            body = encode(((ConstraintViolationException) ex).getConstraintViolations().stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(",")));
+        } else if (ex instanceof OptimisticLockingFailureException) {
+            // a stale version on update
+            response.setStatusCode(HttpStatus.CONFLICT);
+            body = encode(ex.getMessage());
+        } else if (ex instanceof ResponseStatusException) {
+            // unknown route, unreadable body, not acceptable ...
+            var statusException = (ResponseStatusException) ex;
+            response.setStatusCode(statusException.getStatus());
+            body = statusException.getReason() != null
+                    ? encode(statusException.getReason())
+                    : REASON_PHRASES.get(statusException.getStatus());
+        } else {
+            // driver messages stay in the log
+            response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+            body = REASON_PHRASES.get(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if (!(ex instanceof StacklessException) && response.getStatusCode() != null
+                && response.getStatusCode().is5xxServerError()) {
+            log.error("Exception message is {} ", ex.getMessage(), ex);
+        }
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
     }
 
+    private static byte[] encode(String message) {
+        return String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,8 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface IdempotencyRecordRepository extends ReactiveMongoRepository<IdempotencyRecord, String>,
+        IdempotencyRecordRepositoryCustom {
+}
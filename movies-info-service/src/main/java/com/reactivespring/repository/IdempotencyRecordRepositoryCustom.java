@@ -0,0 +1,30 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import com.reactivespring.domain.MovieInfo;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Writes that only apply while the caller still owns its claim - the key IN_PROGRESS with the claim's createdAt.
+ * A claim taken over after in-progress-timeout gets a new createdAt, so its earlier owner can no longer touch it
+ */
+public interface IdempotencyRecordRepositoryCustom {
+
+    /**
+     * Stores the response on the claim. False when the claim is no longer owned
+     */
+    Mono<Boolean> complete(IdempotencyRecord claim, int responseStatus, MovieInfo response);
+
+    /**
+     * Removes the claim so the key is free again. False when the claim is no longer owned
+     */
+    Mono<Boolean> release(IdempotencyRecord claim);
+
+    /**
+     * Takes over a stale claim in a single findAndModify, restamped with the new request. Empty when another
+     * request got there first
+     */
+    Mono<IdempotencyRecord> takeOver(IdempotencyRecord stale, String requestHash, Instant createdAt);
+}
@@ -0,0 +1,52 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.IdempotencyRecord;
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public class IdempotencyRecordRepositoryCustomImpl implements IdempotencyRecordRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public IdempotencyRecordRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<Boolean> complete(IdempotencyRecord claim, int responseStatus, MovieInfo response) {
+        var update = new Update()
+                .set("status", IdempotencyRecord.Status.COMPLETED)
+                .set("responseStatus", responseStatus)
+                .set("response", response);
+        return reactiveMongoTemplate.updateFirst(owned(claim), update, IdempotencyRecord.class)
+                .map(result -> result.getMatchedCount() > 0);
+    }
+
+    @Override
+    public Mono<Boolean> release(IdempotencyRecord claim) {
+        return reactiveMongoTemplate.remove(owned(claim), IdempotencyRecord.class)
+                .map(result -> result.getDeletedCount() > 0);
+    }
+
+    @Override
+    public Mono<IdempotencyRecord> takeOver(IdempotencyRecord stale, String requestHash, Instant createdAt) {
+        var update = new Update()
+                .set("requestHash", requestHash)
+                .set("createdAt", createdAt);
+        return reactiveMongoTemplate.findAndModify(owned(stale), update,
+                FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class);
+    }
+
+    private static Query owned(IdempotencyRecord claim) {
+        return Query.query(Criteria.where("key").is(claim.getKey())
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("createdAt").is(claim.getCreatedAt()));
+    }
+}
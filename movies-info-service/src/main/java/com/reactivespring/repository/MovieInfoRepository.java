@@ -1,7 +1,46 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
 
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String>, MovieInfoRepositoryCustom {
+
+    int STREAM_BATCH_SIZE = 100;
+
+    /**
+     * Streams the whole collection, fetching documents from the cursor in batches
+     */
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<MovieInfo> streamAllBy();
+
+    Flux<MovieInfo> findByYear(Integer year);
+
+    /**
+     * Anchored regex, so it can still walk the name index
+     */
+    Flux<MovieInfo> findByNameStartingWith(String namePrefix);
+
+    Flux<MovieInfo> findByCast(String castMember);
+
+    /**
+     * First page of the keyset pagination
+     */
+    Flux<MovieInfo> findAllBy(Pageable pageable);
+
+    /**
+     * Next page after an ObjectId cursor
+     */
+    @Query("{ '_id': { '$gt': ?0, '$type': 'objectId' } }")
+    Flux<MovieInfo> findAfterObjectIdMovieInfoId(ObjectId movieInfoId, Pageable pageable);
+
+    /**
+     * Next page after a String cursor. String ids sort before ObjectIds, so every ObjectId is still ahead of the cursor
+     */
+    @Query("{ '$or': [ { '_id': { '$gt': ?0 } }, { '_id': { '$type': 'objectId' } } ] }")
+    Flux<MovieInfo> findAfterStringMovieInfoId(String movieInfoId, Pageable pageable);
 }
@@ -0,0 +1,29 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface MovieInfoRepositoryCustom {
+
+    /**
+     * Applies the update in a single findAndModify round trip and returns the updated document.
+     * The version is incremented on every update; when a version is passed only that version matches
+     */
+    Mono<MovieInfo> findAndUpdate(String id, Long version, Update update);
+
+    /**
+     * Runs a prepared query, e.g. one carrying a field projection
+     */
+    Flux<MovieInfo> findByQuery(Query query);
+
+    /**
+     * One unordered insertMany - every document is tried, a failure is a MongoBulkWriteException with a write error
+     * per failed document, by its index in movieInfos
+     */
+    Mono<Void> insertUnordered(List<MovieInfo> movieInfos);
+}
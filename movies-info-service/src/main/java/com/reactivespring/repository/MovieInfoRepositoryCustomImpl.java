@@ -0,0 +1,59 @@
+package com.reactivespring.repository;
+
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<MovieInfo> findAndUpdate(String id, Long version, Update update) {
+        var criteria = Criteria.where("movieInfoId").is(id);
+        if (version != null) {
+            criteria = criteria.and("version").is(version);
+        }
+        // the template adds the $inc of the @Version field itself
+        return reactiveMongoTemplate.findAndModify(Query.query(criteria), update,
+                FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByQuery(Query query) {
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    @Override
+    public Mono<Void> insertUnordered(List<MovieInfo> movieInfos) {
+        var converter = reactiveMongoTemplate.getConverter();
+        var documents = movieInfos.stream()
+                .map(movieInfo -> {
+                    // as the template's insert starts the @Version field
+                    if (movieInfo.getVersion() == null) {
+                        movieInfo.setVersion(0L);
+                    }
+                    var document = new Document();
+                    converter.write(movieInfo, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .then();
+    }
+}
@@ -0,0 +1,69 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MovieInfoDataException;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * ?fields= support - the requested MovieInfo fields as a Mongo projection, or applied to an already loaded MovieInfo
+ */
+public final class MovieInfoProjection {
+
+    static final List<String> FIELDS = List.of("movieInfoId", "name", "year", "cast", "release_date", "version");
+
+    private MovieInfoProjection() {
+    }
+
+    /**
+     * movieInfoId is always kept, it is the keyset pagination cursor
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        var requested = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        var unknown = requested.stream()
+                .filter(field -> !FIELDS.contains(field))
+                .collect(Collectors.joining(","));
+        if (!unknown.isEmpty()) {
+            throw new MovieInfoDataException("unknown movieInfo fields: " + unknown);
+        }
+        requested.add("movieInfoId");
+        return requested;
+    }
+
+    public static Query apply(Query query, Set<String> fields) {
+        fields.forEach(field -> query.fields().include(field));
+        return query;
+    }
+
+    public static MovieInfo apply(MovieInfo movieInfo, Set<String> fields) {
+        var projected = new MovieInfo();
+        projected.setMovieInfoId(movieInfo.getMovieInfoId());
+        if (fields.contains("name")) {
+            projected.setName(movieInfo.getName());
+        }
+        if (fields.contains("year")) {
+            projected.setYear(movieInfo.getYear());
+        }
+        if (fields.contains("cast")) {
+            projected.setCast(movieInfo.getCast());
+        }
+        if (fields.contains("release_date")) {
+            projected.setRelease_date(movieInfo.getRelease_date());
+        }
+        if (fields.contains("version")) {
+            projected.setVersion(movieInfo.getVersion());
+        }
+        return projected;
+    }
+}
@@ -1,43 +1,298 @@
 package com.reactivespring.service;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.cache.MovieInfoCache;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.MovieInfoDataException;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.stream.MovieInfoChangeFeed;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
 public class MovieInfoService {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_IDS = 100;
+    static final int OBJECT_ID_BSON_TYPE = 7;
+
     @Autowired
     private MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    private MovieInfoCache movieInfoCache;
+
+    @Autowired
+    private MovieInfoChangeFeed movieInfoChangeFeed;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${movieinfo.batch.chunk-size:500}")
+    private int batchChunkSize;
+
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        return movieInfoRepository.save(movieInfo)
+                .doOnNext(saved -> movieInfoChangeFeed.publish(MovieInfoEvent.Type.CREATED, saved.getMovieInfoId(), saved));
+    }
+
+    public Flux<MovieInfoEvent> getMovieInfoEvents(Long lastEventId) {
+        return movieInfoChangeFeed.events(lastEventId);
+    }
+
+    /**
+     * Validates each element and inserts the valid ones in chunks of movieinfo.batch.chunk-size,
+     * one unordered insertMany per chunk. Emits one result per element, in request order
+     */
+    public Flux<MovieInfoBatchResult> addMovieInfos(Flux<MovieInfo> movieInfos) {
+        return movieInfos
+                .index()
+                .buffer(batchChunkSize)
+                .concatMap(this::insertChunk);
+    }
+
+    private Flux<MovieInfoBatchResult> insertChunk(List<Tuple2<Long, MovieInfo>> chunk) {
+        var invalid = new ArrayList<MovieInfoBatchResult>();
+        var valid = new ArrayList<Tuple2<Long, MovieInfo>>();
+
+        for (var element : chunk) {
+            var movieInfo = element.getT2();
+            var violations = validator.validate(movieInfo);
+            if (!violations.isEmpty()) {
+                // same format as GlobalErrorHandler
+                var error = violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining(","));
+                invalid.add(new MovieInfoBatchResult(element.getT1(), movieInfo.getMovieInfoId(), 400, error));
+                continue;
+            }
+            // assign the id up front so the result can report it even if the chunk fails part way
+            if (movieInfo.getMovieInfoId() == null) {
+                movieInfo.setMovieInfoId(new ObjectId().toHexString());
+            }
+            valid.add(element);
+        }
+
+        return Flux.merge(Flux.fromIterable(invalid), insertValid(valid))
+                .sort(Comparator.comparing(MovieInfoBatchResult::getIndex));
+    }
+
+    private Flux<MovieInfoBatchResult> insertValid(List<Tuple2<Long, MovieInfo>> elements) {
+        if (elements.isEmpty()) {
+            return Flux.empty();
+        }
+        var movieInfos = elements.stream().map(Tuple2::getT2).collect(Collectors.toList());
+
+        return movieInfoRepository.insertUnordered(movieInfos)
+                .thenMany(Flux.fromIterable(elements).map(this::created))
+                .onErrorResume(ex -> {
+                    var bulkWriteException = findCause(ex, MongoBulkWriteException.class);
+                    if (bulkWriteException == null || bulkWriteException.getWriteErrors().isEmpty()) {
+                        return Flux.fromIterable(elements).map(element -> batchResult(element, 500, ex.getMessage()));
+                    }
+                    // unordered insert - every element was tried, the ones without a write error were written
+                    var writeErrors = new HashMap<Integer, BulkWriteError>();
+                    bulkWriteException.getWriteErrors().forEach(writeError -> writeErrors.put(writeError.getIndex(), writeError));
+                    return Flux.range(0, elements.size())
+                            .map(index -> {
+                                var writeError = writeErrors.get(index);
+                                if (writeError == null) {
+                                    return created(elements.get(index));
+                                }
+                                var status = ErrorCategory.fromErrorCode(writeError.getCode()) == ErrorCategory.DUPLICATE_KEY ? 409 : 500;
+                                return batchResult(elements.get(index), status, writeError.getMessage());
+                            });
+                });
+    }
+
+    private MovieInfoBatchResult created(Tuple2<Long, MovieInfo> element) {
+        var movieInfo = element.getT2();
+        movieInfoChangeFeed.publish(MovieInfoEvent.Type.CREATED, movieInfo.getMovieInfoId(), movieInfo);
+        return batchResult(element, 201, null);
+    }
+
+    private static MovieInfoBatchResult batchResult(Tuple2<Long, MovieInfo> element, Integer status, String error) {
+        return new MovieInfoBatchResult(element.getT1(), element.getT2().getMovieInfoId(), status, error);
+    }
+
+    private static <T extends Throwable> T findCause(Throwable ex, Class<T> type) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
     }
 
     public Flux<MovieInfo> getAll() {
-        return movieInfoRepository.findAll();
+        // limitRate - only ask the cursor for one batch at a time, whatever the subscriber requests
+        return movieInfoRepository.streamAllBy()
+                .limitRate(MovieInfoRepository.STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * Keyset pagination on movieInfoId - pass the last movieInfoId of the previous page as "after"
+     */
+    public Flux<MovieInfo> getAll(Integer limit, String after) {
+        var pageable = pageRequest(limit);
+
+        if (after == null) {
+            return movieInfoRepository.findAllBy(pageable);
+        }
+        if (ObjectId.isValid(after)) {
+            return movieInfoRepository.findAfterObjectIdMovieInfoId(new ObjectId(after), pageable);
+        }
+        return movieInfoRepository.findAfterStringMovieInfoId(after, pageable);
+    }
+
+    /**
+     * Filters by name prefix, cast member and/or year, all in one query - Mongo's planner picks among the name, cast
+     * and year indexes. limit/after page through the result in movieInfoId order, filtered or not; without them it
+     * is streamed from the cursor. fields, when not null, are the only ones read from Mongo
+     */
+    public Flux<MovieInfo> getMovieInfos(Integer limit, String after, Integer year, String namePrefix, String castMember,
+                                         Set<String> fields) {
+        var query = new Query();
+        if (namePrefix != null) {
+            // anchored, so it can still walk the name index
+            query.addCriteria(Criteria.where("name").regex("^" + Pattern.quote(namePrefix)));
+        }
+        if (castMember != null) {
+            query.addCriteria(Criteria.where("cast").is(castMember));
+        }
+        if (year != null) {
+            query.addCriteria(Criteria.where("year").is(year));
+        }
+        if (limit != null || after != null) {
+            if (after != null) {
+                // same cursor conditions as the keyset queries in MovieInfoRepository
+                query.addCriteria(ObjectId.isValid(after)
+                        ? Criteria.where("movieInfoId").gt(new ObjectId(after)).type(OBJECT_ID_BSON_TYPE)
+                        : new Criteria().orOperator(Criteria.where("movieInfoId").gt(after),
+                                Criteria.where("movieInfoId").type(OBJECT_ID_BSON_TYPE)));
+            }
+            query.with(pageRequest(limit));
+        } else {
+            query.cursorBatchSize(MovieInfoRepository.STREAM_BATCH_SIZE);
+        }
+        return movieInfoRepository.findByQuery(fields != null ? MovieInfoProjection.apply(query, fields) : query)
+                .limitRate(MovieInfoRepository.STREAM_BATCH_SIZE);
+    }
+
+    private static PageRequest pageRequest(Integer limit) {
+        var size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return PageRequest.of(0, size, Sort.by("movieInfoId"));
+    }
+
+    /**
+     * The movie infos of the given ids in one $in query on movieInfoId, unknown ids are left out.
+     * fields may be null for the whole documents
+     */
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids, Set<String> fields) {
+        var distinct = new LinkedHashSet<>(ids);
+        if (distinct.isEmpty() || distinct.size() > MAX_IDS) {
+            return Flux.error(new MovieInfoDataException(
+                    "ids must name between 1 and " + MAX_IDS + " movieInfos : " + distinct.size()));
+        }
+        var query = Query.query(Criteria.where("movieInfoId").in(distinct));
+        return movieInfoRepository.findByQuery(fields == null ? query : MovieInfoProjection.apply(query, fields));
     }
 
     public Mono<MovieInfo> getMovieInfoById(String id) {
-        return movieInfoRepository.findById(id);
+        return movieInfoCache.get(id, movieInfoRepository::findById);
+    }
+
+    /**
+     * Projected from the cached document - a hit never goes to Mongo at all
+     */
+    public Mono<MovieInfo> getMovieInfoById(String id, Set<String> fields) {
+        return getMovieInfoById(id)
+                .map(movieInfo -> MovieInfoProjection.apply(movieInfo, fields));
     }
 
     public Mono<MovieInfo> updateMovieInfo(String id, MovieInfo updatedMovieInfo) {
-        // flatmap returns a reactive type (flux,mono), use flatMap
-        return movieInfoRepository.findById(id)
-                .flatMap(movieInfo -> {
-                    movieInfo.setCast(updatedMovieInfo.getCast());
-                    movieInfo.setName(updatedMovieInfo.getName());
-                    movieInfo.setYear(updatedMovieInfo.getYear());
-                    movieInfo.setRelease_date(updatedMovieInfo.getRelease_date());
-                    return movieInfoRepository.save(movieInfo);
+        var update = new Update()
+                .set("name", updatedMovieInfo.getName())
+                .set("year", updatedMovieInfo.getYear())
+                .set("cast", updatedMovieInfo.getCast())
+                .set("release_date", updatedMovieInfo.getRelease_date());
+        return updateFields(id, updatedMovieInfo.getVersion(), update);
+    }
+
+    /**
+     * Partial update - only the fields present in the patch are $set
+     */
+    public Mono<MovieInfo> patchMovieInfo(String id, MovieInfo movieInfoPatch) {
+        var update = new Update();
+        var violations = new HashSet<ConstraintViolation<MovieInfo>>();
+        if (movieInfoPatch.getName() != null) {
+            violations.addAll(validator.validateProperty(movieInfoPatch, "name"));
+            update.set("name", movieInfoPatch.getName());
+        }
+        if (movieInfoPatch.getYear() != null) {
+            violations.addAll(validator.validateProperty(movieInfoPatch, "year"));
+            update.set("year", movieInfoPatch.getYear());
+        }
+        if (movieInfoPatch.getCast() != null) {
+            update.set("cast", movieInfoPatch.getCast());
+        }
+        if (movieInfoPatch.getRelease_date() != null) {
+            update.set("release_date", movieInfoPatch.getRelease_date());
+        }
+        if (!violations.isEmpty()) {
+            return Mono.error(new ConstraintViolationException(violations));
+        }
+        return updateFields(id, movieInfoPatch.getVersion(), update);
+    }
+
+    private Mono<MovieInfo> updateFields(String id, Long version, Update update) {
+        return movieInfoRepository.findAndUpdate(id, version, update)
+                // nothing matched - either the id does not exist or the version is stale
+                .switchIfEmpty(Mono.defer(() -> version == null ? Mono.empty() : movieInfoRepository.existsById(id)
+                        .flatMap(exists -> exists
+                                ? Mono.error(new OptimisticLockingFailureException("movieInfo " + id + " was modified, version " + version + " is stale"))
+                                : Mono.empty())))
+                .doOnNext(movieInfo -> {
+                    movieInfoCache.invalidate(id);
+                    movieInfoChangeFeed.publish(MovieInfoEvent.Type.UPDATED, id, movieInfo);
                 });
     }
 
     public Mono<Void> deleteMovieInfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return movieInfoRepository.deleteById(id)
+                .doOnSuccess(unused -> {
+                    movieInfoCache.invalidate(id);
+                    movieInfoChangeFeed.publish(MovieInfoEvent.Type.DELETED, id, null);
+                });
     }
 }
@@ -0,0 +1,56 @@
+package com.reactivespring.stream;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Single hot source of MovieInfo changes, multicast to every /v1/movieinfos/stream subscriber
+ */
+@Component
+@Slf4j
+public class MovieInfoChangeFeed {
+
+    private final Sinks.Many<MovieInfoEvent> sink;
+    private final int subscriberBufferSize;
+    private long sequence;
+
+    public MovieInfoChangeFeed(@Value("${movieinfo.stream.replay-size:256}") int replaySize,
+                               @Value("${movieinfo.stream.subscriber-buffer-size:256}") int subscriberBufferSize) {
+        // keeps the last replaySize events for clients reconnecting with Last-Event-ID
+        this.sink = Sinks.many().replay().limit(replaySize);
+        this.subscriberBufferSize = subscriberBufferSize;
+    }
+
+    /**
+     * synchronized - ids stay in emission order and the sink only ever sees one emitter at a time
+     */
+    public synchronized void publish(MovieInfoEvent.Type type, String movieInfoId, MovieInfo movieInfo) {
+        sink.tryEmitNext(new MovieInfoEvent(++sequence, type, movieInfoId, movieInfo));
+    }
+
+    /**
+     * Live events, preceded by whatever is still in the replay window after lastEventId.
+     * Each subscriber has its own bounded buffer; a slow one loses its oldest events instead of holding up the others
+     */
+    public Flux<MovieInfoEvent> events(Long lastEventId) {
+        return Flux.defer(() -> {
+                    var current = currentSequence();
+                    // no id, or an id from before a restart - start from now
+                    var after = lastEventId == null || lastEventId > current ? current : lastEventId;
+                    return sink.asFlux().filter(event -> event.getId() > after);
+                })
+                .onBackpressureBuffer(subscriberBufferSize,
+                        event -> log.warn("Dropped movieInfo event {} for a slow subscriber", event.getId()),
+                        BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    private synchronized long currentSequence() {
+        return sequence;
+    }
+}
@@ -1,6 +1,10 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.repository.IdempotencyRecordRepository;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,11 +12,22 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +40,9 @@ class MoviesInfoControllerIntgTest {
     @Autowired
     MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
     @Autowired
     WebTestClient webTestClient;
 
@@ -47,6 +65,7 @@ class MoviesInfoControllerIntgTest {
     @AfterEach
     void tearDown() {
         movieInfoRepository.deleteAll().block();
+        idempotencyRecordRepository.deleteAll().block();
     }
 
     @Test
@@ -71,6 +90,122 @@ class MoviesInfoControllerIntgTest {
 
     }
 
+    @Test
+    void addMovieInfo_idempotencyKey() {
+        MovieInfo movieInfo = new MovieInfo(null, "Batman Begins1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        var created = webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "create-batman-begins1")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .doesNotExist(IdempotencyService.IDEMPOTENT_REPLAYED)
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+        assert created != null;
+
+        // the client timed out and retries
+        webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "create-batman-begins1")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .valueEquals(IdempotencyService.IDEMPOTENT_REPLAYED, "true")
+                .expectBody(MovieInfo.class)
+                .isEqualTo(created);
+
+        // the same key with a different movie
+        webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "create-batman-begins1")
+                .bodyValue(new MovieInfo(null, "Batman Begins2",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(422)
+                .expectBody(String.class)
+                .isEqualTo("Idempotency-Key was already used with a different request : create-batman-begins1");
+
+        assertEquals(4L, movieInfoRepository.count().block());
+    }
+
+    @Test
+    void addMovieInfos() {
+        var movieInfos = Flux.just(new MovieInfo(null, "Batman Begins1",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "",
+                        -2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", "The Dark Knight1",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        webTestClient
+                .post()
+                .uri(MOVIES_URL + "/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(movieInfos, MovieInfo.class)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoBatchResult.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var results = listEntityExchangeResult.getResponseBody();
+                    assert results != null;
+                    assertEquals(List.of(201, 400, 409, 201),
+                            results.stream().map(MovieInfoBatchResult::getStatus).collect(Collectors.toList()));
+                    assertNotNull(results.get(0).getMovieInfoId());
+                    assertEquals("movieInfo.name must be present,movieInfo.year must be positive", results.get(1).getError());
+                });
+
+        StepVerifier.create(movieInfoRepository.findAll())
+                .expectNextCount(5)
+                .verifyComplete();
+    }
+
+    @Test
+    void addMovieInfos_duplicatesInOneChunk() {
+        var movieInfos = Flux.just(new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("ghi", "Inception",
+                        2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")),
+                new MovieInfo("ghi", "Inception",
+                        2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")),
+                new MovieInfo("jkl", "Interstellar",
+                        2014, List.of("Matthew McConaughey"), LocalDate.parse("2014-11-07")));
+
+        webTestClient
+                .post()
+                .uri(MOVIES_URL + "/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(movieInfos, MovieInfo.class)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoBatchResult.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var results = listEntityExchangeResult.getResponseBody();
+                    assert results != null;
+                    // every element is tried, the ones after a duplicate are still written
+                    assertEquals(List.of(409, 201, 409, 201),
+                            results.stream().map(MovieInfoBatchResult::getStatus).collect(Collectors.toList()));
+                });
+
+        assertEquals(0L, movieInfoRepository.findById("jkl").map(MovieInfo::getVersion).block());
+        assertEquals(5L, movieInfoRepository.count().block());
+    }
+
     @Test
     void getAllMovieInfos() {
         webTestClient
@@ -83,6 +218,176 @@ class MoviesInfoControllerIntgTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getMovieInfos_filtered() {
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?cast={cast}&year={year}", "Christian Bale", 2008)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var movieInfos = listEntityExchangeResult.getResponseBody();
+                    assert movieInfos != null;
+                    assertEquals(1, movieInfos.size());
+                    assertEquals("The Dark Knight", movieInfos.get(0).getName());
+                });
+    }
+
+    @Test
+    void getMovieInfos_filteredAndPaged() {
+        var firstPage = webTestClient
+                .get()
+                .uri(MOVIES_URL + "?cast={cast}&limit={limit}", "Christian Bale", 2)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseBody();
+        assert firstPage != null;
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?cast={cast}&limit={limit}&after={after}", "Christian Bale", 2,
+                        firstPage.get(1).getMovieInfoId())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getAllMovieInfos_fields() {
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?fields={fields}&year={year}", "name,year", 2012)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].movieInfoId").isEqualTo("abc")
+                .jsonPath("$[0].name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].release_date").doesNotExist();
+    }
+
+    @Test
+    void getAllMovieInfos_streamFields() {
+        var flux = webTestClient
+                .get()
+                .uri(MOVIES_URL + "?fields={fields}", "name")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(flux)
+                .thenConsumeWhile(movieInfo -> movieInfo.getName() != null && movieInfo.getCast() == null && movieInfo.getYear() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    void getMovieInfoById_fields() {
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?fields={fields}", "abc", "year")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.year").isEqualTo(2012)
+                .jsonPath("$.name").doesNotExist();
+    }
+
+    @Test
+    void getAllMovieInfos_keyset() {
+        var seen = new ArrayList<String>();
+
+        // walk the collection one page at a time until an empty page comes back
+        for (int i = 0; i < 10; i++) {
+            var after = seen.isEmpty() ? Optional.<String>empty() : Optional.of(seen.get(seen.size() - 1));
+            var page = webTestClient
+                    .get()
+                    .uri(uriBuilder -> uriBuilder.path(MOVIES_URL)
+                            .queryParam("limit", 1)
+                            .queryParamIfPresent("after", after)
+                            .build())
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectBodyList(MovieInfo.class)
+                    .returnResult()
+                    .getResponseBody();
+            assert page != null;
+            if (page.isEmpty()) {
+                break;
+            }
+            assertEquals(1, page.size());
+            seen.add(page.get(0).getMovieInfoId());
+        }
+
+        assertEquals(3, seen.size());
+        assertEquals(3, Set.copyOf(seen).size());
+    }
+
+    @Test
+    void getAllMovieInfos_stream() {
+        var flux = webTestClient
+                .get()
+                .uri(MOVIES_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(flux)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamMovieInfos() {
+        var movieInfo = new MovieInfo(null, "Batman Begins1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        // the stream only answers once there is an event, so create one from another thread
+        Schedulers.boundedElastic().schedule(() -> webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated(), 500, TimeUnit.MILLISECONDS);
+
+        var events = webTestClient
+                .get()
+                .uri(MOVIES_URL + "/stream")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.CREATED, event.getType());
+                    assertEquals("Batman Begins1", event.getMovieInfo().getName());
+                })
+                .thenCancel()
+                .verify();
+    }
+
     @Test
     void getMovieInfoById() {
         var movieInfoId = "abc";
@@ -128,6 +433,55 @@ class MoviesInfoControllerIntgTest {
 
     }
 
+    @Test
+    void patchMovieInfo() {
+        var movieInfoPatch = new MovieInfo();
+        movieInfoPatch.setYear(2013);
+
+        var movieInfoId = "abc";
+
+        webTestClient
+                .patch()
+                .uri(MOVIES_URL + "/{id}", movieInfoId)
+                .bodyValue(movieInfoPatch)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var patchedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assert patchedMovieInfo != null;
+                    assertEquals("Dark Knight Rises", patchedMovieInfo.getName());
+                    assertEquals(2013, patchedMovieInfo.getYear());
+                    assertEquals(1L, patchedMovieInfo.getVersion());
+                });
+    }
+
+    @Test
+    void updateMovieInfo_versionConflict() {
+        var movieInfoId = "abc";
+        var movieInfo = new MovieInfo(null, "Batman Ends",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"), 0L);
+
+        // first writer wins and moves the version to 1
+        webTestClient
+                .put()
+                .uri(MOVIES_URL + "/{id}", movieInfoId)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+
+        // second writer still holds version 0
+        webTestClient
+                .put()
+                .uri(MOVIES_URL + "/{id}", movieInfoId)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
     @Test
     void deleteMovieById() {
         var movieInfoId = "abc";
@@ -138,4 +492,34 @@ class MoviesInfoControllerIntgTest {
                 .expectStatus()
                 .isNoContent();
     }
-}
\ No newline at end of file
+
+    @Test
+    void getMoviesInfo_byIds() {
+        var batmanBegins = movieInfoRepository.findByYear(2005).blockFirst();
+        assert batmanBegins != null;
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", batmanBegins.getMovieInfoId() + ",abc,unknown,abc")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertEquals(Set.of("Batman Begins", "Dark Knight Rises"),
+                        movieInfos.stream().map(MovieInfo::getName).collect(Collectors.toSet())));
+    }
+
+    @Test
+    void getMoviesInfo_byIds_tooMany() {
+        var ids = IntStream.range(0, 101).mapToObj(i -> "id" + i).collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", ids)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("ids must name between 1 and 100 movieInfos : 101");
+    }
+}
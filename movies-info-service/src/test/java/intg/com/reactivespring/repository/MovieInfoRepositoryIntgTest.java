@@ -1,16 +1,20 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,6 +25,9 @@ class MovieInfoRepositoryIntgTest {
     @Autowired
     MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
     @BeforeEach
     void setUp() {
         var movieInfo = List.of(new MovieInfo(null, "Batman Begins",
@@ -99,5 +106,53 @@ class MovieInfoRepositoryIntgTest {
         StepVerifier.create(flux).expectNextCount(2).verifyComplete();
     }
 
+    @Test
+    void findByYear() {
+        var flux = movieInfoRepository.findByYear(2005).log();
+
+        StepVerifier.create(flux).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void findByNameStartingWith() {
+        var flux = movieInfoRepository.findByNameStartingWith("Dark").log();
+
+        StepVerifier.create(flux)
+                .assertNext(movieInfo -> assertEquals("Dark Knight Rises", movieInfo.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findByCast() {
+        var flux = movieInfoRepository.findByCast("Christian Bale").log();
+
+        StepVerifier.create(flux).expectNextCount(3).verifyComplete();
+    }
+
+    @Test
+    void findByYear_usesIndex() {
+        assertIndexScan(new Document("year", 2005));
+    }
 
-}
\ No newline at end of file
+    @Test
+    void findByNameStartingWith_usesIndex() {
+        // same anchored, quoted regex the derived query builds
+        assertIndexScan(new Document("name", Pattern.compile("^" + Pattern.quote("Dark"))));
+    }
+
+    @Test
+    void findByCast_usesIndex() {
+        assertIndexScan(new Document("cast", "Christian Bale"));
+    }
+
+    private void assertIndexScan(Document filter) {
+        var explain = reactiveMongoTemplate.getCollection("movieInfo")
+                .flatMap(collection -> Mono.from(collection.find(filter).explain()))
+                .block();
+        assert explain != null;
+
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+    }
+}
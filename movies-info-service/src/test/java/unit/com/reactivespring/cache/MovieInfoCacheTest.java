@@ -0,0 +1,116 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoCacheTest {
+
+    SimpleMeterRegistry meterRegistry;
+    MovieInfoCache movieInfoCache;
+    AtomicInteger loads;
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+            2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        movieInfoCache = new MovieInfoCache(100, Duration.ofMinutes(1), meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_loadsOnceThenHits() {
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(movieInfo).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(movieInfo).verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void get_concurrentMissesShareOneLoad() {
+        Sinks.One<MovieInfo> pending = Sinks.one();
+
+        var first = movieInfoCache.get("abc", id -> {
+            loads.incrementAndGet();
+            return pending.asMono();
+        });
+        var second = movieInfoCache.get("abc", this::load);
+
+        StepVerifier.create(first.zipWith(second))
+                .then(() -> pending.tryEmitValue(movieInfo))
+                .assertNext(tuple -> assertSame(tuple.getT1(), tuple.getT2()))
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_emptyIsNotCached() {
+        StepVerifier.create(movieInfoCache.get("def", id -> {
+            loads.incrementAndGet();
+            return Mono.empty();
+        })).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("def", this::load)).expectNext(movieInfo).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate() {
+        movieInfoCache.get("abc", this::load).block();
+        movieInfoCache.invalidate("abc");
+        movieInfoCache.get("abc", this::load).block();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate_loadInFlight_staleDocumentNotCached() {
+        Sinks.One<MovieInfo> slowLoad = Sinks.one();
+        var beforeUpdate = movieInfoCache.get("abc", id -> {
+            loads.incrementAndGet();
+            return slowLoad.asMono();
+        });
+        var afterUpdate = new MovieInfo("abc", "The Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        StepVerifier.create(beforeUpdate)
+                .then(() -> {
+                    // the update is written while the load is still reading, then the old document arrives
+                    movieInfoCache.invalidate("abc");
+                    slowLoad.tryEmitValue(movieInfo);
+                })
+                .expectNext(movieInfo)
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoCache.get("abc", id -> {
+                    loads.incrementAndGet();
+                    return Mono.just(afterUpdate);
+                }))
+                .expectNext(afterUpdate)
+                .verifyComplete();
+        assertEquals(2, loads.get());
+    }
+
+    private Mono<MovieInfo> load(String id) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return movieInfo;
+        });
+    }
+}
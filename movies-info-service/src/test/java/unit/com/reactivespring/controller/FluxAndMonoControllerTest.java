@@ -1,9 +1,12 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.metrics.EndpointMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.test.StepVerifier;
 
@@ -14,6 +17,7 @@ import static org.junit.jupiter.api.Assertions.*;
 // Gives access to all endpoints in controller
 @WebFluxTest(controllers = FluxAndMonoController.class)
 @AutoConfigureWebTestClient
+@Import({EndpointMetrics.class, SimpleMeterRegistry.class})
 class FluxAndMonoControllerTest {
 
     @Autowired
@@ -62,23 +66,6 @@ class FluxAndMonoControllerTest {
                 });
     }
 
-    @Test
-    void stream() {
-        var flux = webTestClient
-                .get()
-                .uri("/stream")
-                .exchange()
-                .expectStatus()
-                .isOk()
-                .returnResult(Long.class)
-                .getResponseBody();
-
-        StepVerifier.create(flux)
-                .expectNext(0L, 1L, 2L, 3L)
-                .thenCancel()
-                .verify();
-    }
-
     @Test
     void mono() {
         var flux = webTestClient
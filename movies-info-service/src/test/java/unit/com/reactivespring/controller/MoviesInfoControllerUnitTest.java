@@ -1,26 +1,47 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.config.CodecConfig;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.IdempotencyConflictException;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.idempotency.IdempotentResult;
+import com.reactivespring.metrics.EndpointMetrics;
 import com.reactivespring.service.MovieInfoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
 @AutoConfigureWebTestClient
+@Import({CodecConfig.class, EndpointMetrics.class, SimpleMeterRegistry.class})
 public class MoviesInfoControllerUnitTest {
     static String MOVIES_URL = "/v1/movieinfos";
 
@@ -31,6 +52,9 @@ public class MoviesInfoControllerUnitTest {
     @MockBean
     private MovieInfoService movieInfoService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @Test
     void getAllMoviesInfo() {
 
@@ -53,6 +77,163 @@ public class MoviesInfoControllerUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMoviesInfo_cbor() {
+        var movieInfo = List.of(new MovieInfo("abc", "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        when(movieInfoService.getAll()).thenReturn(Flux.fromIterable(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .expectBodyList(MovieInfo.class)
+                .isEqualTo(movieInfo);
+    }
+
+    @Test
+    void getAllMoviesInfo_page() {
+
+        var movieInfo = List.of(new MovieInfo("abd", "The Dark Knight",
+                2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        when(movieInfoService.getAll(2, "abc")).thenReturn(Flux.fromIterable(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?limit={limit}&after={after}", 2, "abc")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getMoviesInfo_byName() {
+
+        var movieInfo = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        when(movieInfoService.getMovieInfos(null, null, null, "Dark", null, null)).thenReturn(Flux.fromIterable(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?name={name}", "Dark")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getMoviesInfo_byIds() {
+
+        var movieInfo = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        when(movieInfoService.getMovieInfosByIds(List.of("abc", "def"), null)).thenReturn(Flux.fromIterable(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", "abc,def")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void streamMovieInfos() {
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        when(movieInfoService.getMovieInfoEvents(7L)).thenReturn(
+                Flux.just(new MovieInfoEvent(8L, MovieInfoEvent.Type.UPDATED, "abc", movieInfo)));
+
+        var flux = webTestClient
+                .get()
+                .uri(MOVIES_URL + "/stream")
+                .header("Last-Event-ID", "7")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>>() {})
+                .getResponseBody();
+
+        StepVerifier.create(flux)
+                .assertNext(event -> {
+                    assertEquals("8", event.id());
+                    assertEquals("UPDATED", event.event());
+                    assert event.data() != null;
+                    assertEquals("abc", event.data().getMovieInfoId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllMoviesInfo_fields() {
+
+        var movieInfo = new MovieInfo();
+        movieInfo.setMovieInfoId("abc");
+        movieInfo.setName("Dark Knight Rises");
+
+        when(movieInfoService.getMovieInfos(null, null, null, null, null, Set.of("name", "movieInfoId")))
+                .thenReturn(Flux.just(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?fields={fields}", "name")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].release_date").doesNotExist();
+    }
+
+    @Test
+    void getAllMoviesInfo_unknownField() {
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?fields={fields}", "name,budget")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("unknown movieInfo fields: budget");
+    }
+
+    @Test
+    void getMovieById_fields() {
+        var movieInfo = new MovieInfo();
+        movieInfo.setMovieInfoId("abc");
+        movieInfo.setYear(2012);
+
+        when(movieInfoService.getMovieInfoById("abc", Set.of("year", "movieInfoId"))).thenReturn(Mono.just(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?fields={fields}", "abc", "year")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.year").isEqualTo(2012)
+                .jsonPath("$.name").doesNotExist();
+    }
+
     @Test
     void getMovieById() {
         var id = "abc";
@@ -76,6 +257,78 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void getMovieById_cbor() {
+        var movieInfo = new MovieInfo("abc", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(movieInfoService.getMovieInfoById(isA(String.class))).thenReturn(Mono.just(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "abc")
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(MovieInfo.class)
+                .isEqualTo(movieInfo);
+    }
+
+    @Test
+    void getMovieById_defaultsToJson() {
+        var movieInfo = new MovieInfo("abc", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(movieInfoService.getMovieInfoById(isA(String.class))).thenReturn(Mono.just(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "abc")
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.release_date").isEqualTo("2005-06-15");
+    }
+
+    @Test
+    void addMovieInfo_smile() {
+        var smile = CodecConfig.APPLICATION_SMILE;
+        var movieInfo = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(movieInfoService.addMovieInfo(isA(MovieInfo.class))).thenAnswer(invocation -> {
+            MovieInfo saved = invocation.getArgument(0);
+            saved.setMovieInfoId("mockId");
+            return Mono.just(saved);
+        });
+
+        webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .contentType(smile)
+                .accept(smile)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .contentType(smile)
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var savedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assert savedMovieInfo != null;
+                    assertEquals("mockId", savedMovieInfo.getMovieInfoId());
+                    assertEquals(LocalDate.parse("2005-06-15"), savedMovieInfo.getRelease_date());
+                });
+    }
+
     @Test
     void postMovieInfo() {
         var movieInfo = new MovieInfo("mockId", "Batman Begins",
@@ -128,6 +381,86 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void addMovieInfo_idempotencyKeyReplayed() {
+        var movieInfo = new MovieInfo(null, "Batman Begins1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(idempotencyService.execute(eq("key-1"), any(), eq(201), any())).thenReturn(Mono.just(new IdempotentResult<>(201,
+                new MovieInfo("mockId", "Batman Begins1",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")), true)));
+
+        webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "key-1")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .valueEquals(IdempotencyService.IDEMPOTENT_REPLAYED, "true")
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var savedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assert savedMovieInfo != null;
+                    assertEquals("mockId", savedMovieInfo.getMovieInfoId());
+                });
+
+        verifyNoInteractions(movieInfoService);
+    }
+
+    @Test
+    void addMovieInfo_idempotencyKeyInProgress() {
+        var movieInfo = new MovieInfo(null, "Batman Begins1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        when(idempotencyService.execute(eq("key-1"), any(), eq(201), any())).thenReturn(Mono.error(
+                new IdempotencyConflictException("A request with this Idempotency-Key is still in progress : key-1")));
+
+        webTestClient
+                .post()
+                .uri(MOVIES_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "key-1")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class)
+                .isEqualTo("A request with this Idempotency-Key is still in progress : key-1");
+    }
+
+    @Test
+    void addMovieInfos() {
+        //given
+        var movieInfos = Flux.just(new MovieInfo(null, "Batman Begins1",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "",
+                        -2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+
+        when(movieInfoService.addMovieInfos(ArgumentMatchers.<Flux<MovieInfo>>any())).thenReturn(Flux.just(
+                new MovieInfoBatchResult(0L, "mockId", 201, null),
+                new MovieInfoBatchResult(1L, null, 400, "movieInfo.name must be present,movieInfo.year must be positive")));
+
+        //when
+        webTestClient
+                .post()
+                .uri(MOVIES_URL + "/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(movieInfos, MovieInfo.class)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoBatchResult.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var results = listEntityExchangeResult.getResponseBody();
+                    assert results != null;
+                    assertEquals(2, results.size());
+                    assertEquals(201, results.get(0).getStatus());
+                    assertEquals(400, results.get(1).getStatus());
+                });
+    }
+
     @Test
     void addMovieInfo_validation() {
         //given
@@ -182,4 +515,54 @@ public class MoviesInfoControllerUnitTest {
                 });
 
     }
+
+    @Test
+    void patchMovieInfo() {
+        //given
+        var movieInfoId = "abc";
+        var movieInfoPatch = new MovieInfo();
+        movieInfoPatch.setYear(2013);
+
+        when(movieInfoService.patchMovieInfo(isA(String.class), isA(MovieInfo.class))).thenReturn(
+                Mono.just(new MovieInfo(movieInfoId, "Dark Knight Rises",
+                        2013, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 1L))
+        );
+
+        //when
+        webTestClient
+                .patch()
+                .uri(MOVIES_URL + "/{id}", movieInfoId)
+                .bodyValue(movieInfoPatch)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var patchedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assert patchedMovieInfo != null;
+                    assertEquals(2013, patchedMovieInfo.getYear());
+                    assertEquals(1L, patchedMovieInfo.getVersion());
+                });
+    }
+
+    @Test
+    void updateMovieInfo_versionConflict() {
+        //given
+        var movieInfoId = "abc";
+        var movieInfo = new MovieInfo(null, "Dark Knight Rises1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"), 0L);
+
+        when(movieInfoService.updateMovieInfo(isA(String.class), isA(MovieInfo.class))).thenReturn(
+                Mono.error(new OptimisticLockingFailureException("movieInfo abc was modified, version 0 is stale"))
+        );
+
+        //when
+        webTestClient
+                .put()
+                .uri(MOVIES_URL + "/{id}", movieInfoId)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
 }
@@ -0,0 +1,58 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.MovieInfoDataException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GlobalErrorHandlerTest {
+
+    GlobalErrorHandler globalErrorHandler = new GlobalErrorHandler();
+
+    @Test
+    void expectedError_ownStatusAndMessage() {
+        var exchange = handle(new MovieInfoDataException("movieInfo.name must be present"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exchange.getResponse().getStatusCode());
+        assertEquals("movieInfo.name must be present", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void versionConflict() {
+        var exchange = handle(new OptimisticLockingFailureException("movieInfo abc was updated concurrently, version 1 is stale"));
+
+        assertEquals(HttpStatus.CONFLICT, exchange.getResponse().getStatusCode());
+        assertEquals("movieInfo abc was updated concurrently, version 1 is stale",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void unexpectedError_detailNotSent() {
+        var exchange = handle(new IllegalStateException("Command failed with error 13 (Unauthorized)"));
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exchange.getResponse().getStatusCode());
+        assertEquals("Internal Server Error", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void committedResponse_errorPassedOn() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movieinfos/stream"));
+        exchange.getResponse().setComplete().block();
+        var error = new IllegalStateException("cursor killed");
+
+        StepVerifier.create(globalErrorHandler.handle(exchange, error))
+                .expectErrorMatches(ex -> ex == error)
+                .verify();
+    }
+
+    private MockServerWebExchange handle(Throwable ex) {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movieinfos/abc"));
+        globalErrorHandler.handle(exchange, ex).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,212 @@
+package com.reactivespring.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.IdempotencyRecord;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.IdempotencyConflictException;
+import com.reactivespring.exception.IdempotencyKeyReusedException;
+import com.reactivespring.exception.MovieInfoDataException;
+import com.reactivespring.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    IdempotencyService idempotencyService;
+    AtomicInteger creates = new AtomicInteger();
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+            2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, objectMapper, 1_000, 0.01,
+                Duration.ofMinutes(1), meterRegistry);
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(idempotencyRecordRepository.complete(any(IdempotencyRecord.class), anyInt(), any(MovieInfo.class)))
+                .thenReturn(Mono.just(true));
+        when(idempotencyRecordRepository.release(any(IdempotencyRecord.class))).thenReturn(Mono.just(true));
+    }
+
+    @Test
+    void execute_freshKey_noLookup() {
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectNext(new IdempotentResult<>(201, movieInfo, false))
+                .verifyComplete();
+
+        assertEquals(1, creates.get());
+        verify(idempotencyRecordRepository, never()).findById(any(String.class));
+        verify(idempotencyRecordRepository).complete(argThat(claim -> claim.getKey().equals("key-1")
+                && claim.getStatus() == IdempotencyRecord.Status.IN_PROGRESS), eq(201), eq(movieInfo));
+        assertEquals(1.0, meterRegistry.get(IdempotencyService.LOOKUPS).tag("result", "skipped").counter().count());
+    }
+
+    @Test
+    void execute_seenKey_replayedWithoutCreate() {
+        idempotencyService.execute("key-1", movieInfo, 201, this::create).block();
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Mono.just(completed("key-1")));
+
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectNext(new IdempotentResult<>(201, movieInfo, true))
+                .verifyComplete();
+
+        assertEquals(1, creates.get());
+        assertEquals(1.0, meterRegistry.get(IdempotencyService.LOOKUPS).tag("result", "replayed").counter().count());
+    }
+
+    @Test
+    void execute_keyClaimedElsewhere_replayed() {
+        // a key this instance has not seen, completed by another instance
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Mono.just(completed("key-1")));
+
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectNext(new IdempotentResult<>(201, movieInfo, true))
+                .verifyComplete();
+
+        assertEquals(0, creates.get());
+    }
+
+    @Test
+    void execute_inProgress_conflict() {
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Mono.just(new IdempotencyRecord("key-1",
+                IdempotencyRecord.Status.IN_PROGRESS, requestHash(), null, null, Instant.now())));
+
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectError(IdempotencyConflictException.class)
+                .verify();
+
+        assertEquals(0, creates.get());
+    }
+
+    @Test
+    void execute_createFails_keyReleased() {
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, () -> Mono.error(new IllegalStateException("write failed"))))
+                .expectErrorMessage("write failed")
+                .verify();
+
+        verify(idempotencyRecordRepository).release(argThat(claim -> claim.getKey().equals("key-1")));
+        verify(idempotencyRecordRepository, never()).complete(any(IdempotencyRecord.class), anyInt(), any(MovieInfo.class));
+    }
+
+    @Test
+    void execute_responseNotStored_keyNotReleased() {
+        when(idempotencyRecordRepository.complete(any(IdempotencyRecord.class), anyInt(), any(MovieInfo.class)))
+                .thenReturn(Mono.error(new IllegalStateException("write failed")));
+
+        // the movie was created - the client gets it, and a retry must not create it again
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectNext(new IdempotentResult<>(201, movieInfo, false))
+                .verifyComplete();
+
+        verify(idempotencyRecordRepository, never()).release(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_staleClaim_takenOver() {
+        var stale = new IdempotencyRecord("key-1", IdempotencyRecord.Status.IN_PROGRESS, requestHash(), null, null,
+                Instant.now().minus(Duration.ofMinutes(2)));
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Mono.just(stale));
+        when(idempotencyRecordRepository.takeOver(eq(stale), eq(requestHash()), any(Instant.class)))
+                .thenAnswer(invocation -> Mono.just(new IdempotencyRecord("key-1", IdempotencyRecord.Status.IN_PROGRESS,
+                        requestHash(), null, null, invocation.getArgument(2))));
+
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectNext(new IdempotentResult<>(201, movieInfo, false))
+                .verifyComplete();
+
+        assertEquals(1, creates.get());
+        verify(idempotencyRecordRepository, never()).release(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_staleClaimTakenOverElsewhere_conflict() {
+        var stale = new IdempotencyRecord("key-1", IdempotencyRecord.Status.IN_PROGRESS, requestHash(), null, null,
+                Instant.now().minus(Duration.ofMinutes(2)));
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Mono.just(stale));
+        when(idempotencyRecordRepository.takeOver(eq(stale), any(String.class), any(Instant.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(idempotencyService.execute("key-1", movieInfo, 201, this::create))
+                .expectError(IdempotencyConflictException.class)
+                .verify();
+
+        assertEquals(0, creates.get());
+    }
+
+    @Test
+    void execute_keyReusedWithAnotherRequest_unprocessable() {
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Mono.just(completed("key-1")));
+        var other = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        StepVerifier.create(idempotencyService.execute("key-1", other, 201, this::create))
+                .expectErrorSatisfies(ex -> {
+                    assertTrue(ex instanceof IdempotencyKeyReusedException);
+                    assertEquals("Idempotency-Key was already used with a different request : key-1", ex.getMessage());
+                })
+                .verify();
+
+        assertEquals(0, creates.get());
+    }
+
+    @Test
+    void execute_keyTooLong() {
+        StepVerifier.create(idempotencyService.execute("k".repeat(256), movieInfo, 201, this::create))
+                .expectError(MovieInfoDataException.class)
+                .verify();
+
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    private Mono<MovieInfo> create() {
+        return Mono.fromSupplier(() -> {
+            creates.incrementAndGet();
+            return movieInfo;
+        });
+    }
+
+    private IdempotencyRecord completed(String key) {
+        return new IdempotencyRecord(key, IdempotencyRecord.Status.COMPLETED, requestHash(), 201, movieInfo, Instant.now());
+    }
+
+    private String requestHash() {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsBytes(movieInfo)));
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.reactivespring.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeenKeysBloomFilterTest {
+
+    @Test
+    void mightContain_noFalseNegatives() {
+        var seenKeys = new SeenKeysBloomFilter(10_000, 0.01, Duration.ofDays(1));
+        var keys = IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID().toString()).toArray(String[]::new);
+
+        for (var key : keys) {
+            seenKeys.put(key);
+        }
+
+        for (var key : keys) {
+            assertTrue(seenKeys.mightContain(key), key);
+        }
+    }
+
+    @Test
+    void mightContain_falsePositiveRateNearConfigured() {
+        var seenKeys = new SeenKeysBloomFilter(10_000, 0.01, Duration.ofDays(1));
+        IntStream.range(0, 10_000).forEach(i -> seenKeys.put("seen-" + i));
+
+        var falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> seenKeys.mightContain("fresh-" + i))
+                .count();
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void put_oldGenerationDropped() throws InterruptedException {
+        var seenKeys = new SeenKeysBloomFilter(1_000, 0.01, Duration.ofMillis(20));
+        seenKeys.put("first");
+
+        Thread.sleep(30);
+        seenKeys.put("second");
+        // previous generation is still checked
+        assertTrue(seenKeys.mightContain("first"));
+
+        Thread.sleep(30);
+        seenKeys.put("third");
+        assertFalse(seenKeys.mightContain("first"));
+        assertTrue(seenKeys.mightContain("second"));
+        assertTrue(seenKeys.mightContain("third"));
+    }
+}
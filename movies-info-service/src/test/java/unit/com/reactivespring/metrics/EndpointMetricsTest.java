@@ -0,0 +1,65 @@
+package com.reactivespring.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointMetricsTest {
+
+    SimpleMeterRegistry meterRegistry;
+    EndpointMetrics endpointMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        endpointMetrics = new EndpointMetrics(meterRegistry, 0);
+    }
+
+    @Test
+    void flux() {
+        StepVerifier.create(Flux.just(1, 2, 3).transform(endpointMetrics.flux("flux")))
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+
+        assertEquals(3.0, meterRegistry.get(EndpointMetrics.ELEMENTS).tag("endpoint", "flux").counter().count());
+        assertEquals(1, meterRegistry.get(EndpointMetrics.REQUESTS)
+                .tags("endpoint", "flux", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void mono_error() {
+        StepVerifier.create(Mono.error(new IllegalStateException("boom")).transform(endpointMetrics.mono("mono")))
+                .verifyError(IllegalStateException.class);
+
+        assertEquals(1.0, meterRegistry.get(EndpointMetrics.ERRORS)
+                .tags("endpoint", "mono", "exception", "IllegalStateException").counter().count());
+        assertEquals(1, meterRegistry.get(EndpointMetrics.REQUESTS)
+                .tags("endpoint", "mono", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void timedPerSubscription() {
+        var mono = Mono.just("Hello world").transform(endpointMetrics.mono("mono"));
+        mono.block();
+        mono.block();
+
+        assertEquals(2, meterRegistry.get(EndpointMetrics.REQUESTS)
+                .tags("endpoint", "mono", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void sampledLogging() {
+        var logged = new EndpointMetrics(meterRegistry, 1);
+
+        StepVerifier.create(Flux.just(1, 2).transform(logged.flux("flux")))
+                .expectNext(1, 2)
+                .verifyComplete();
+
+        assertEquals(2.0, meterRegistry.get(EndpointMetrics.ELEMENTS).tag("endpoint", "flux").counter().count());
+    }
+}
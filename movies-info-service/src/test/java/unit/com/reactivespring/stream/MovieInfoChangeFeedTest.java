@@ -0,0 +1,78 @@
+package com.reactivespring.stream;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+class MovieInfoChangeFeedTest {
+
+    MovieInfoChangeFeed movieInfoChangeFeed;
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+            2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        movieInfoChangeFeed = new MovieInfoChangeFeed(2, 2);
+    }
+
+    @Test
+    void events_liveOnly() {
+        movieInfoChangeFeed.publish(MovieInfoEvent.Type.CREATED, "abc", movieInfo);
+
+        StepVerifier.create(movieInfoChangeFeed.events(null))
+                .then(() -> movieInfoChangeFeed.publish(MovieInfoEvent.Type.DELETED, "abc", null))
+                .expectNextMatches(event -> event.getId() == 2L && event.getType() == MovieInfoEvent.Type.DELETED)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void events_replayAfterLastEventId() {
+        movieInfoChangeFeed.publish(MovieInfoEvent.Type.CREATED, "abc", movieInfo);
+        movieInfoChangeFeed.publish(MovieInfoEvent.Type.UPDATED, "abc", movieInfo);
+        movieInfoChangeFeed.publish(MovieInfoEvent.Type.DELETED, "abc", null);
+
+        // window of 2 - event 1 is gone, events 2 and 3 are replayed
+        StepVerifier.create(movieInfoChangeFeed.events(0L))
+                .expectNextMatches(event -> event.getId() == 2L)
+                .expectNextMatches(event -> event.getId() == 3L)
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(movieInfoChangeFeed.events(2L))
+                .expectNextMatches(event -> event.getId() == 3L)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void events_slowSubscriberDropsOldest() {
+        var fast = movieInfoChangeFeed.events(null);
+        var slow = movieInfoChangeFeed.events(null);
+
+        StepVerifier.create(slow, 0)
+                .then(() -> {
+                    // the fast subscriber gets everything even though the slow one requested nothing
+                    StepVerifier.create(fast)
+                            .then(() -> {
+                                for (int i = 0; i < 5; i++) {
+                                    movieInfoChangeFeed.publish(MovieInfoEvent.Type.UPDATED, "abc", movieInfo);
+                                }
+                            })
+                            .expectNextCount(5)
+                            .thenCancel()
+                            .verify();
+                })
+                .thenRequest(2)
+                .expectNextMatches(event -> event.getId() == 4L)
+                .expectNextMatches(event -> event.getId() == 5L)
+                .thenCancel()
+                .verify();
+    }
+}
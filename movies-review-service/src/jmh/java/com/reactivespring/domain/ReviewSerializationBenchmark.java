@@ -0,0 +1,48 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encode / decode of one Review, in each format the codecs negotiate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReviewSerializationBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    Review review = new Review("abc", 1L, "Awesome Movie", 9.0);
+
+    ObjectWriter writer;
+    ObjectReader reader;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        var builder = format.equals("smile") ? Jackson2ObjectMapperBuilder.smile()
+                : format.equals("cbor") ? Jackson2ObjectMapperBuilder.cbor()
+                : Jackson2ObjectMapperBuilder.json();
+        var objectMapper = builder.build();
+        writer = objectMapper.writerFor(Review.class);
+        reader = objectMapper.readerFor(Review.class);
+        encoded = writer.writeValueAsBytes(review);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(review);
+    }
+
+    @Benchmark
+    public Review decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,39 @@
+package com.reactivespring.exception;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the exception behind a 404, thrown from depth frames down - a WebFlux request is well over
+ * a hundred frames deep by the time a handler's Mono errors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StacklessExceptionBenchmark {
+
+    static final String MESSAGE = "Review not found for the given Review Id : ";
+
+    @Param({"20", "150"})
+    int depth;
+
+    @Benchmark
+    public RuntimeException withStackTrace() {
+        return atDepth(depth, true);
+    }
+
+    @Benchmark
+    public RuntimeException stackless() {
+        return atDepth(depth, false);
+    }
+
+    private static RuntimeException atDepth(int depth, boolean withStackTrace) {
+        if (depth > 0) {
+            return atDepth(depth - 1, withStackTrace);
+        }
+        return withStackTrace
+                ? new RuntimeException(MESSAGE + "abc")
+                : new ReviewNotFoundException(MESSAGE + "abc");
+    }
+}
@@ -0,0 +1,116 @@
+package com.reactivespring.repository;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Rating histogram and top 10 of one movie - the aggregation pipelines of ReviewReactiveRepositoryCustomImpl against
+ * reading every review of the movie and computing the same in the application.
+ * Needs a Mongo at -Dbenchmark.mongodb.uri (mongodb://localhost:27017), the review_benchmark database is recreated.
+ * Left out of the default jmh run, run it with ./gradlew :movies-review-service:jmh -PjmhMongo[=mongodb uri]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class ReviewRankingBenchmark {
+
+    static final Long MOVIE_INFO_ID = 1L;
+    static final List<Double> BOUNDARIES = List.of(1.0, 2.0, 3.0, 4.0, 5.0);
+    static final int TOP = 10;
+    static final int INSERT_BATCH_SIZE = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    int reviewCount;
+
+    MongoClient mongoClient;
+    ReactiveMongoTemplate reactiveMongoTemplate;
+    ReviewReactiveRepositoryCustomImpl repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mongoClient = MongoClients.create(System.getProperty("benchmark.mongodb.uri", "mongodb://localhost:27017"));
+        reactiveMongoTemplate = new ReactiveMongoTemplate(mongoClient, "review_benchmark");
+        repository = new ReviewReactiveRepositoryCustomImpl(reactiveMongoTemplate);
+
+        reactiveMongoTemplate.dropCollection(Review.class).block();
+        // the indexes declared on Review, as auto-index-creation makes them
+        var indexOperations = reactiveMongoTemplate.indexOps(Review.class);
+        IndexResolver.create(reactiveMongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(Review.class)
+                .forEach(index -> indexOperations.ensureIndex(index).block());
+
+        // the movie's reviews, plus as many of other movies the index has to skip
+        var random = new Random(42);
+        Flux.range(0, reviewCount * 2)
+                .map(i -> new Review(null, i % 2 == 0 ? MOVIE_INFO_ID : 2L + i % 100, "comment " + i,
+                        i % 20 == 0 ? null : Math.round(random.nextDouble() * 60) / 10.0))
+                .buffer(INSERT_BATCH_SIZE)
+                .concatMap(reviews -> reactiveMongoTemplate.insertAll(reviews))
+                .blockLast();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reactiveMongoTemplate.dropCollection(Review.class).block();
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public List<RatingBucket> histogram_aggregation() {
+        return repository.countRatingsByBucket(MOVIE_INFO_ID, BOUNDARIES).collectList().block();
+    }
+
+    @Benchmark
+    public long[] histogram_inApplication() {
+        var counts = new long[BOUNDARIES.size() + 1];
+        return moviesReviews()
+                .filter(review -> review.getRating() != null)
+                .reduce(counts, (histogram, review) -> {
+                    var bucket = 0;
+                    while (bucket < BOUNDARIES.size() && review.getRating() >= BOUNDARIES.get(bucket)) {
+                        bucket++;
+                    }
+                    histogram[bucket]++;
+                    return histogram;
+                })
+                .block();
+    }
+
+    @Benchmark
+    public List<Review> top_aggregation() {
+        return repository.findTopRated(MOVIE_INFO_ID, TOP).collectList().block();
+    }
+
+    @Benchmark
+    public List<Review> top_inApplication() {
+        return moviesReviews()
+                .filter(review -> review.getRating() != null)
+                .collect(Collectors.toCollection(ArrayList<Review>::new))
+                .map(reviews -> reviews.stream()
+                        .sorted(Comparator.comparing(Review::getRating).reversed().thenComparing(Review::getReviewId))
+                        .limit(TOP)
+                        .collect(Collectors.toList()))
+                .block();
+    }
+
+    private Flux<Review> moviesReviews() {
+        return reactiveMongoTemplate.find(Query.query(Criteria.where("movieInfoId").is(MOVIE_INFO_ID)), Review.class);
+    }
+}
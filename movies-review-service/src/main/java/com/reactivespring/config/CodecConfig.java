@@ -0,0 +1,107 @@
+package com.reactivespring.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR and Smile next to JSON, so movies-service can read reviews in a binary format.
+ * Picked by Accept / Content-Type, a wildcard Accept still gets JSON
+ */
+@Configuration
+public class CodecConfig {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    @Bean
+    public CodecCustomizer binaryCodecCustomizer(ObjectMapper objectMapper,
+                                                 ObjectProvider<Jackson2ObjectMapperBuilderCustomizer> customizers) {
+        var smileMapper = objectMapper(Jackson2ObjectMapperBuilder.smile(), customizers);
+        var cborMapper = objectMapper(Jackson2ObjectMapperBuilder.cbor(), customizers);
+        // custom codecs are consulted before the defaults, so JSON has to lead this list as well.
+        // the binary codecs need their media types spelled out, the mapper-only constructors fall back to JSON's
+        return configurer -> {
+            var codecs = configurer.customCodecs();
+            codecs.register(new Jackson2JsonEncoder(objectMapper));
+            codecs.registerWithDefaultConfig(new Jackson2JsonDecoder(objectMapper));
+            codecs.register(new Jackson2SmileEncoder(smileMapper, APPLICATION_SMILE));
+            codecs.registerWithDefaultConfig(new Jackson2SmileDecoder(smileMapper, APPLICATION_SMILE));
+            codecs.register(new CborEncoder(cborMapper));
+            codecs.registerWithDefaultConfig(new CborDecoder(cborMapper));
+        };
+    }
+
+    // same spring.jackson.* settings as the JSON ObjectMapper
+    private static ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder,
+                                             ObjectProvider<Jackson2ObjectMapperBuilderCustomizer> customizers) {
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        return builder.build();
+    }
+
+    /**
+     * Jackson2CborEncoder only encodes single values, a Flux goes out as one CBOR array
+     */
+    static class CborEncoder extends Jackson2CborEncoder {
+
+        CborEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (inputStream instanceof Mono) {
+                return Mono.from(inputStream)
+                        .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                        .flux();
+            }
+            var listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+            return Flux.from(inputStream)
+                    .collectList()
+                    .map(values -> encodeValue(values, bufferFactory, listType, mimeType, hints))
+                    .flux();
+        }
+    }
+
+    /**
+     * Jackson2CborDecoder only decodes single values, a Flux is read from one CBOR array
+     */
+    static class CborDecoder extends Jackson2CborDecoder {
+
+        CborDecoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Flux<Object> decode(Publisher<DataBuffer> input, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+            var listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+            return decodeToMono(input, listType, mimeType, hints)
+                    .flatMapIterable(values -> (List<Object>) values);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Outcome of a create sent with an Idempotency-Key, replayed for a retry with the same key and request.
+ * Mongo removes the record a day after it was created
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document("idempotency")
+public class IdempotencyRecord {
+
+    public enum Status { IN_PROGRESS, COMPLETED }
+
+    @Id
+    private String key;
+    private Status status;
+    // SHA-256 of the request body, a key sent again with a different body is refused
+    private String requestHash;
+    private Integer responseStatus;
+    private Review response;
+    @Indexed(name = "createdAt_ttl", expireAfter = "1d")
+    private Instant createdAt;
+}
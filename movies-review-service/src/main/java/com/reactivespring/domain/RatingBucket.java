@@ -0,0 +1,18 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reviews with minRating <= rating < maxRating. A null minRating is everything below the first boundary,
+ * a null maxRating everything from the last one up
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingBucket {
+    private Double minRating;
+    private Double maxRating;
+    private Long count;
+}
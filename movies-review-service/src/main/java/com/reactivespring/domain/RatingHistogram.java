@@ -0,0 +1,18 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Rated reviews of one movie per rating bucket, empty buckets included
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingHistogram {
+    private Long movieInfoId;
+    private List<RatingBucket> buckets;
+}
@@ -5,20 +5,30 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+@CompoundIndexes({
+        @CompoundIndex(name = "movieInfoId_reviewId", def = "{ 'movieInfoId': 1, '_id': 1 }"), // reviews of one movie, in _id order
+        @CompoundIndex(name = "movieInfoId_rating", def = "{ 'movieInfoId': 1, 'rating': -1, '_id': 1 }") // top rated first, rating histogram
+})
 public class Review {
 
     @Id
     private String reviewId;
+    @NotNull(message = "rating.movieInfoId : must not be null")
     private Long movieInfoId;
+    @TextIndexed // the one text index a collection can have - comment search, unscoped or per movie
     private String comment;
-    //@Min(value = 0L, message = "rating.negative : rating is negative and please pass a non-negative value")
+    @Min(value = 0L, message = "rating.negative : rating is negative and please pass a non-negative value")
     private Double rating;
 }
@@ -0,0 +1,18 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A review matched by a comment search, with its text score. Passing the cursor back as ?after= continues
+ * the search with the hits ranked below this one
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSearchHit {
+    private Review review;
+    private Double score;
+    private String cursor;
+}
@@ -0,0 +1,33 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Rating aggregates of one movie, kept up to date as its reviews are written
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStats {
+
+    @Id
+    private Long movieInfoId;
+    private Long count; // reviews
+    private Long ratingCount; // reviews with a rating
+    private Double ratingSum;
+    private Double minRating;
+    private Double maxRating;
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0L, 0L, 0.0, null, null);
+    }
+
+    public Double getAverageRating() {
+        return ratingCount == null || ratingCount == 0 ? null : ratingSum / ratingCount;
+    }
+}
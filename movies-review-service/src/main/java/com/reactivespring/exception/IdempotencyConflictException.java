@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class IdempotencyConflictException extends StacklessException {
+    private String message;
+    public IdempotencyConflictException(String s) {
+        super(s, HttpStatus.CONFLICT.value());
+        this.message=s;
+    }
+}
@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ReviewConflictException extends StacklessException {
+    private String message;
+    public ReviewConflictException(String s) {
+        super(s, HttpStatus.CONFLICT.value());
+        this.message=s;
+    }
+}
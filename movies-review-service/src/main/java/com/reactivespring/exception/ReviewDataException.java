@@ -1,9 +1,11 @@
 package com.reactivespring.exception;
 
-public class ReviewDataException extends RuntimeException {
+import org.springframework.http.HttpStatus;
+
+public class ReviewDataException extends StacklessException {
     private String message;
     public ReviewDataException(String s) {
-        super(s);
+        super(s, HttpStatus.BAD_REQUEST.value());
         this.message=s;
     }
 }
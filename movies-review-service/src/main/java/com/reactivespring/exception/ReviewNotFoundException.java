@@ -1,18 +1,20 @@
 package com.reactivespring.exception;
 
-public class ReviewNotFoundException extends RuntimeException{
+import org.springframework.http.HttpStatus;
+
+public class ReviewNotFoundException extends StacklessException {
 
     private String message;
     private Throwable ex;
 
     public ReviewNotFoundException( String message, Throwable ex) {
-        super(message, ex);
+        super(message, ex, HttpStatus.NOT_FOUND.value());
         this.message = message;
         this.ex = ex;
     }
 
     public ReviewNotFoundException(String message) {
-        super(message);
+        super(message, HttpStatus.NOT_FOUND.value());
         this.message = message;
     }
 }
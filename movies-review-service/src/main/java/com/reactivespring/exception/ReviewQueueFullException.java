@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ReviewQueueFullException extends StacklessException {
+    private String message;
+    public ReviewQueueFullException(String s) {
+        super(s, HttpStatus.SERVICE_UNAVAILABLE.value());
+        this.message=s;
+    }
+}
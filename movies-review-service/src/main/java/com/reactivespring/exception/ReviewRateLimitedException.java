@@ -0,0 +1,17 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ReviewRateLimitedException extends StacklessException {
+    private String message;
+    private final long retryAfterSeconds;
+    public ReviewRateLimitedException(String s, long retryAfterSeconds) {
+        super(s, HttpStatus.TOO_MANY_REQUESTS.value());
+        this.message=s;
+        this.retryAfterSeconds=retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
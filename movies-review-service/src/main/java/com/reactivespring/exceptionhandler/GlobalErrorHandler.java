@@ -0,0 +1,83 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exception.ReviewRateLimitedException;
+import com.reactivespring.exception.StacklessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * When an error occurs, run through this first - ahead of spring boot's default handler.
+ * The expected errors are StacklessExceptions, answered with their own status and pre-encoded message and
+ * not logged - EndpointMetrics counts them. Only a 5xx that is not one of them is logged, with its stack trace,
+ * and answered with the reason phrase alone
+ */
+@Component
+@Order(-2)
+@Slf4j // logs errors
+public class GlobalErrorHandler implements ErrorWebExceptionHandler {
+
+    // a write-behind flush is due well within a second
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    // bodies of the errors without a message of their own (an unknown route is a 404 "Not Found"), encoded once
+    private static final Map<HttpStatus, byte[]> REASON_PHRASES = new EnumMap<>(HttpStatus.class);
+
+    static {
+        for (var status : HttpStatus.values()) {
+            REASON_PHRASES.put(status, status.getReasonPhrase().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        var response = exchange.getResponse();
+        if (response.isCommitted()) {
+            // a streamed body failed part way - status and headers are already out, leave it to the server
+            return Mono.error(ex);
+        }
+        byte[] body;
+        if (ex instanceof StacklessException) {
+            var expected = (StacklessException) ex;
+            response.setRawStatusCode(expected.getStatus());
+            body = expected.getBody();
+            if (ex instanceof ReviewQueueFullException) {
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            } else if (ex instanceof ReviewRateLimitedException) {
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                        String.valueOf(((ReviewRateLimitedException) ex).getRetryAfterSeconds()));
+            }
+        } else if (ex instanceof ResponseStatusException) {
+            // unknown route, unreadable body, not acceptable ...
+            var statusException = (ResponseStatusException) ex;
+            response.setStatusCode(statusException.getStatus());
+            body = statusException.getReason() != null
+                    ? statusException.getReason().getBytes(StandardCharsets.UTF_8)
+                    : REASON_PHRASES.get(statusException.getStatus());
+        } else {
+            // driver and downstream messages stay in the log
+            response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+            body = REASON_PHRASES.get(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if (!(ex instanceof StacklessException) && response.getStatusCode() != null
+                && response.getStatusCode().is5xxServerError()) {
+            log.error("Exception message is {} ", ex.getMessage(), ex);
+        }
+        // the export sets gzip before its body fails, the error message is not compressed
+        response.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -0,0 +1,124 @@
+package com.reactivespring.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.exception.ReviewRateLimitedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control on review writes (POST / PUT / DELETE under /v1/reviews): a token bucket per client,
+ * then a cap on the writes in flight across all clients. Either rejection is a 429 with Retry-After.
+ * Reads are never held back, they are what the limits protect.
+ * A client is its remote address unless client-header names a header set by a trusted gateway - a header
+ * the caller sets itself would let it pick a fresh bucket per request
+ */
+@Component
+public class ReviewAdmissionFilter implements WebFilter {
+
+    static final String REJECTED = "review.admission.rejected";
+    static final String IN_FLIGHT = "review.admission.inflight";
+
+    private static final String REVIEWS_PATH = "/v1/reviews";
+
+    // stackless, one instance answers every concurrency rejection
+    private static final ReviewRateLimitedException IN_FLIGHT_EXCEEDED =
+            new ReviewRateLimitedException("Too many review writes in progress, please retry later", 1);
+
+    private final boolean enabled;
+    private final double rate;
+    private final int burst;
+    private final int maxInFlight;
+    // null unless a trusted gateway sets the client identity
+    private final String clientHeader;
+    // bounded and striped - a flood of made-up client ids evicts buckets instead of growing the map
+    private final Cache<String, TokenBucket> buckets;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rateRejected;
+    private final Counter concurrencyRejected;
+
+    public ReviewAdmissionFilter(@Value("${review.admission.enabled:true}") boolean enabled,
+                                 @Value("${review.admission.rate:50}") double rate,
+                                 @Value("${review.admission.burst:100}") int burst,
+                                 @Value("${review.admission.max-in-flight:256}") int maxInFlight,
+                                 @Value("${review.admission.client-header:}") String clientHeader,
+                                 @Value("${review.admission.max-clients:100000}") long maxClients,
+                                 @Value("${review.admission.idle-timeout:10m}") Duration idleTimeout,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.rate = rate;
+        this.burst = burst;
+        this.maxInFlight = maxInFlight;
+        this.clientHeader = clientHeader == null || clientHeader.isBlank() ? null : clientHeader;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.rateRejected = Counter.builder(REJECTED)
+                .tag("reason", "rate")
+                .description("review writes turned away, the client was over its rate")
+                .register(meterRegistry);
+        this.concurrencyRejected = Counter.builder(REJECTED)
+                .tag("reason", "concurrency")
+                .description("review writes turned away, too many writes were in flight")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT, inFlight, AtomicInteger::get)
+                .description("review writes in progress")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || !isReviewWrite(exchange)) {
+            return chain.filter(exchange);
+        }
+        var bucket = buckets.get(clientOf(exchange), client -> new TokenBucket(rate, burst));
+        var waitNanos = bucket.tryAcquire(System.nanoTime());
+        if (waitNanos > 0) {
+            rateRejected.increment();
+            return Mono.error(new ReviewRateLimitedException("Too many review writes, please retry later",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L))));
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            concurrencyRejected.increment();
+            return Mono.error(IN_FLIGHT_EXCEEDED);
+        }
+        return chain.filter(exchange)
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private static boolean isReviewWrite(ServerWebExchange exchange) {
+        var method = exchange.getRequest().getMethod();
+        return (method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.DELETE)
+                && exchange.getRequest().getPath().value().startsWith(REVIEWS_PATH);
+    }
+
+    /**
+     * The trusted client header when one is configured and present, otherwise the remote address
+     */
+    private String clientOf(ServerWebExchange exchange) {
+        if (clientHeader != null) {
+            var client = exchange.getRequest().getHeaders().getFirst(clientHeader);
+            if (client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        var remoteAddress = exchange.getRequest().getRemoteAddress();
+        return remoteAddress != null && remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress()
+                : "unknown";
+    }
+}
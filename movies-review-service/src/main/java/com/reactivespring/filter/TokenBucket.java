@@ -0,0 +1,36 @@
+package com.reactivespring.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of burst tokens refilled at rate tokens a second, kept as a single timestamp (GCRA) -
+ * the time at which the bucket is full again. Taking a token is one compare-and-set, no lock
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(double rate, int burst) {
+        this.nanosPerToken = (long) (1_000_000_000L / rate);
+        this.burstNanos = nanosPerToken * burst;
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the nanos until one is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            var current = fullAt.get();
+            var next = Math.max(current, nowNanos) + nanosPerToken;
+            var wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.config.CodecConfig;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSearchHit;
+import com.reactivespring.exception.ReviewConflictException;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.idempotency.IdempotentResult;
+import com.reactivespring.metrics.EndpointMetrics;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.service.ReviewExportService;
+import com.reactivespring.service.ReviewRankingService;
+import com.reactivespring.service.ReviewSearchService;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehind;
+import com.reactivespring.stream.ReviewChangeFeed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+public class ReviewHandler {
+
+    /**
+     * What GET /v1/reviews can be written as, JSON first for a wildcard Accept
+     */
+    static final List<MediaType> PRODUCIBLE_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_NDJSON, CodecConfig.APPLICATION_SMILE, MediaType.APPLICATION_CBOR);
+
+    static final int DEFAULT_TOP_LIMIT = 10;
+    static final int DEFAULT_SEARCH_LIMIT = 20;
+    static final int MAX_MOVIE_INFO_IDS = 100;
+
+    @Autowired
+    private Validator validator;
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private ReviewStatsService reviewStatsService;
+
+    private ReviewRankingService reviewRankingService;
+
+    private ReviewSearchService reviewSearchService;
+
+    private ReviewExportService reviewExportService;
+
+    private ReviewWriteBehind reviewWriteBehind;
+
+    private IdempotencyService idempotencyService;
+
+    private ReviewChangeFeed reviewChangeFeed;
+
+    private EndpointMetrics endpointMetrics;
+
+    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository, ReviewStatsService reviewStatsService,
+                         ReviewRankingService reviewRankingService, ReviewSearchService reviewSearchService,
+                         ReviewExportService reviewExportService, ReviewWriteBehind reviewWriteBehind,
+                         IdempotencyService idempotencyService, ReviewChangeFeed reviewChangeFeed,
+                         EndpointMetrics endpointMetrics) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewRankingService = reviewRankingService;
+        this.reviewSearchService = reviewSearchService;
+        this.reviewExportService = reviewExportService;
+        this.reviewWriteBehind = reviewWriteBehind;
+        this.idempotencyService = idempotencyService;
+        this.reviewChangeFeed = reviewChangeFeed;
+        this.endpointMetrics = endpointMetrics;
+    }
+
+    /**
+     * With write-behind on, the review is queued for the next bulk write -
+     * 202 straight away with ack=enqueue, 201 once it is written with ack=durable.
+     * A retry with the Idempotency-Key of an earlier create gets that create's response, marked Idempotent-Replayed
+     */
+    public Mono<ServerResponse> addReview(ServerRequest request) {
+        var status = reviewWriteBehind.isEnabled() && reviewWriteBehind.getAck() == ReviewWriteBehind.Ack.ENQUEUE
+                ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+        var idempotencyKey = request.headers().firstHeader(IdempotencyService.IDEMPOTENCY_KEY);
+        return request.bodyToMono(Review.class)
+                .doOnNext(this::validate)
+                .flatMap(review -> idempotencyKey == null
+                        ? createReview(review).map(created -> new IdempotentResult<>(status.value(), created, false))
+                        : idempotencyService.execute(idempotencyKey, review, status.value(), () -> createReview(review)))
+                .transform(endpointMetrics.mono("addReview"))
+                .flatMap(result -> {
+                    var response = ServerResponse.status(result.getStatus());
+                    if (result.isReplayed()) {
+                        response.header(IdempotencyService.IDEMPOTENT_REPLAYED, "true");
+                    }
+                    return response.bodyValue(result.getResponse());
+                });
+    }
+
+    private Mono<Review> createReview(Review review) {
+        if (reviewWriteBehind.isEnabled()) {
+            return reviewWriteBehind.submit(review);
+        }
+        // insert, never save - a reviewId that is already taken must not replace that review, nor count twice
+        return reviewReactiveRepository.insert(review)
+                .onErrorMap(DuplicateKeyException.class, ex -> new ReviewConflictException(
+                        "Review already exists for the given Review Id : " + review.getReviewId()))
+                .flatMap(savedReview -> reviewStatsService.reviewAdded(savedReview).thenReturn(savedReview));
+    }
+
+    /**
+     * All reviews, those of one movie (movieInfoId) or of several (movieInfoIds, comma separated, at most 100).
+     * Either filter walks the movieInfoId_reviewId index. Reviews are streamed from the cursor as they are read,
+     * never collected into a list - application/x-ndjson writes one review per line
+     */
+    public Mono<ServerResponse> getReviews(ServerRequest request) {
+        var reviews = request.queryParam("movieInfoIds")
+                .map(movieInfoIds -> reviewReactiveRepository
+                        .findReviewsByMovieInfoIdInOrderByMovieInfoIdAscReviewIdAsc(toMovieInfoIds(movieInfoIds)))
+                .or(() -> request.queryParam("movieInfoId")
+                        .map(movieInfoId -> reviewReactiveRepository.findReviewsByMovieInfoIdOrderByReviewId(toMovieInfoId(movieInfoId))))
+                .orElseGet(reviewReactiveRepository::streamAllBy)
+                // limitRate - only ask the cursor for one batch at a time, whatever the subscriber requests
+                .limitRate(ReviewReactiveRepository.STREAM_BATCH_SIZE)
+                .transform(endpointMetrics.flux("getReviews"));
+        return ServerResponse.ok()
+                .contentType(negotiate(request))
+                .body(reviews, Review.class);
+    }
+
+    public Mono<ServerResponse> getReviewById(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return findReview(reviewId)
+                .transform(endpointMetrics.mono("getReviewById"))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    /**
+     * The stats delta is taken from the review as the findAndModify found it, never from an earlier read
+     */
+    public Mono<ServerResponse> updateReview(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return request.bodyToMono(Review.class)
+                .doOnNext(update -> validate(validator.validateProperty(update, "rating")))
+                .flatMap(update -> reviewReactiveRepository
+                        .updateCommentAndRating(reviewId, update.getComment(), update.getRating())
+                        .switchIfEmpty(Mono.error(() -> notFound(reviewId)))
+                        .flatMap(previous -> {
+                            var updatedReview = new Review(reviewId, previous.getMovieInfoId(),
+                                    update.getComment(), update.getRating());
+                            return reviewStatsService.reviewUpdated(updatedReview, previous.getRating())
+                                    .thenReturn(updatedReview);
+                        }))
+                .transform(endpointMetrics.mono("updateReview"))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    /**
+     * Only the request that actually removed the review takes it off the stats
+     */
+    public Mono<ServerResponse> deleteReview(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return reviewReactiveRepository.removeById(reviewId)
+                .switchIfEmpty(Mono.error(() -> notFound(reviewId)))
+                .flatMap(reviewStatsService::reviewDeleted)
+                .transform(endpointMetrics.mono("deleteReview"))
+                .then(ServerResponse.noContent().build());
+    }
+
+    /**
+     * Count, sum, min, max and average rating of a movie - one lookup of the aggregates kept by ReviewStatsService
+     */
+    public Mono<ServerResponse> getReviewStats(ServerRequest request) {
+        var movieInfoId = toMovieInfoId(request.pathVariable("movieInfoId"));
+        return reviewStatsService.getReviewStats(movieInfoId)
+                .transform(endpointMetrics.mono("getReviewStats"))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    /**
+     * Recomputes all the aggregates from the reviews, for repair
+     */
+    public Mono<ServerResponse> rebuildReviewStats(ServerRequest request) {
+        return reviewStatsService.rebuild()
+                .transform(endpointMetrics.mono("rebuildReviewStats"))
+                .then(ServerResponse.noContent().build());
+    }
+
+    public Mono<ServerResponse> getRatingHistogram(ServerRequest request) {
+        var movieInfoId = toMovieInfoId(request.pathVariable("movieInfoId"));
+        return reviewRankingService.getRatingHistogram(movieInfoId)
+                .transform(endpointMetrics.mono("getRatingHistogram"))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    /**
+     * ?limit= highest rated reviews, 10 by default
+     */
+    public Mono<ServerResponse> getTopRatedReviews(ServerRequest request) {
+        var movieInfoId = toMovieInfoId(request.pathVariable("movieInfoId"));
+        var limit = request.queryParam("limit").map(ReviewHandler::toLimit).orElse(DEFAULT_TOP_LIMIT);
+        var reviews = reviewRankingService.getTopRated(movieInfoId, limit)
+                .transform(endpointMetrics.flux("getTopRatedReviews"));
+        return ServerResponse.ok().body(reviews, Review.class);
+    }
+
+    /**
+     * ?q= keywords in the comments, best match first, streamed as the text index yields them. ?movieInfoId= scopes
+     * to one movie, ?limit= hits per page (20 by default) and ?after= the cursor of the last hit of the previous page
+     */
+    public Mono<ServerResponse> searchReviews(ServerRequest request) {
+        var movieInfoId = request.queryParam("movieInfoId").map(ReviewHandler::toMovieInfoId).orElse(null);
+        var limit = request.queryParam("limit").map(ReviewHandler::toLimit).orElse(DEFAULT_SEARCH_LIMIT);
+        var hits = reviewSearchService.search(request.queryParam("q").orElse(null), movieInfoId,
+                        request.queryParam("after").orElse(null), limit)
+                .transform(endpointMetrics.flux("searchReviews"));
+        return ServerResponse.ok()
+                .contentType(negotiate(request))
+                .body(hits, ReviewSearchHit.class);
+    }
+
+    /**
+     * Every review as gzip compressed NDJSON, encoded into the response's own buffers as the cursor is read.
+     * curl --compressed decodes it, without the flag the body is saved as a .ndjson.gz file
+     */
+    public Mono<ServerResponse> exportReviews(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body((outputMessage, context) -> outputMessage.writeWith(reviewExportService.encode(
+                        reviewExportService.reviews().transform(endpointMetrics.flux("exportReviews")),
+                        outputMessage.bufferFactory())));
+    }
+
+    /**
+     * Push feed of the new and updated reviews of one movie, off the shared change stream
+     */
+    public Mono<ServerResponse> streamReviews(ServerRequest request) {
+        var movieInfoId = toMovieInfoId(request.pathVariable("movieInfoId"));
+        var events = reviewChangeFeed.reviews(movieInfoId)
+                .map(review -> ServerSentEvent.builder(review)
+                        .id(review.getReviewId())
+                        .build());
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(events, new ParameterizedTypeReference<ServerSentEvent<Review>>() {});
+    }
+
+    private Mono<Review> findReview(String reviewId) {
+        return reviewReactiveRepository.findById(reviewId)
+                .switchIfEmpty(Mono.error(() -> notFound(reviewId)));
+    }
+
+    private static ReviewNotFoundException notFound(String reviewId) {
+        return new ReviewNotFoundException("Review not found for the given Review Id : " + reviewId);
+    }
+
+    private void validate(Review review) {
+        validate(validator.validate(review));
+    }
+
+    private static void validate(Set<ConstraintViolation<Review>> constraintViolations) {
+        if (!constraintViolations.isEmpty()) {
+            var errorMessage = constraintViolations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+            throw new ReviewDataException(errorMessage);
+        }
+    }
+
+    private static Set<Long> toMovieInfoIds(String movieInfoIds) {
+        var ids = Arrays.stream(movieInfoIds.split(","))
+                .map(String::trim)
+                .filter(movieInfoId -> !movieInfoId.isEmpty())
+                .map(ReviewHandler::toMovieInfoId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (ids.isEmpty() || ids.size() > MAX_MOVIE_INFO_IDS) {
+            throw new ReviewDataException("movieInfoIds must name between 1 and " + MAX_MOVIE_INFO_IDS
+                    + " movies : " + ids.size());
+        }
+        return ids;
+    }
+
+    private static Long toMovieInfoId(String movieInfoId) {
+        try {
+            return Long.valueOf(movieInfoId);
+        } catch (NumberFormatException e) {
+            throw new ReviewDataException("movieInfoId must be a number : " + movieInfoId);
+        }
+    }
+
+    private static int toLimit(String limit) {
+        try {
+            return Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            throw new ReviewDataException("limit must be a number : " + limit);
+        }
+    }
+
+    private static MediaType negotiate(ServerRequest request) {
+        var accepted = new ArrayList<>(request.headers().accept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (var acceptedType : accepted) {
+            for (var producible : PRODUCIBLE_MEDIA_TYPES) {
+                if (acceptedType.isCompatibleWith(producible) && acceptedType.getQualityValue() > 0) {
+                    return producible;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
@@ -0,0 +1,188 @@
+package com.reactivespring.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.IdempotencyRecord;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.IdempotencyConflictException;
+import com.reactivespring.exception.IdempotencyKeyReusedException;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for creates. The first request with a key claims it with an insert, creates,
+ * and stores its response; a retry with the same key and body gets that response back without a second write,
+ * the same key with a different body is a 422.
+ * The claim is what makes it safe across instances and restarts - the in-process Bloom filter of seen keys only
+ * spares a fresh key, the common case, the read for a stored response
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    static final int MAX_KEY_LENGTH = 255;
+    static final String LOOKUPS = "idempotency.lookups";
+    // same as the TTL index on IdempotencyRecord.createdAt
+    static final Duration RECORD_TTL = Duration.ofDays(1);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final SeenKeysBloomFilter seenKeys;
+    private final Duration inProgressTimeout;
+    private final Counter lookupsSkipped;
+    private final Counter lookupsReplayed;
+    private final Counter lookupsMissed;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                              @Value("${idempotency.expected-keys:1000000}") long expectedKeys,
+                              @Value("${idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+                              @Value("${idempotency.in-progress-timeout:1m}") Duration inProgressTimeout,
+                              MeterRegistry meterRegistry) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.seenKeys = new SeenKeysBloomFilter(expectedKeys, falsePositiveRate, RECORD_TTL);
+        this.inProgressTimeout = inProgressTimeout;
+        this.lookupsSkipped = lookups(meterRegistry, "skipped", "fresh keys, no read");
+        this.lookupsReplayed = lookups(meterRegistry, "replayed", "retries answered from the stored response");
+        this.lookupsMissed = lookups(meterRegistry, "missed", "reads that found nothing, Bloom filter false positives");
+    }
+
+    /**
+     * @param request the request body, a retry must send the same one
+     * @param status  the status of a fresh create, stored with its response
+     */
+    public Mono<IdempotentResult<Review>> execute(String key, Review request, int status, Supplier<Mono<Review>> create) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new ReviewDataException(IDEMPOTENCY_KEY + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        var requestHash = requestHash(request);
+        if (!seenKeys.mightContain(key)) {
+            lookupsSkipped.increment();
+            return claimAndCreate(key, requestHash, status, create);
+        }
+        return existing(key, requestHash, status, create)
+                .switchIfEmpty(Mono.defer(() -> {
+                    lookupsMissed.increment();
+                    return claimAndCreate(key, requestHash, status, create);
+                }));
+    }
+
+    private Mono<IdempotentResult<Review>> claimAndCreate(String key, String requestHash, int status,
+                                                          Supplier<Mono<Review>> create) {
+        seenKeys.put(key);
+        // millisecond precision, as stored - the claim's createdAt is matched on every later write
+        var claim = new IdempotencyRecord(key, IdempotencyRecord.Status.IN_PROGRESS, requestHash, null, null,
+                Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        return idempotencyRecordRepository.insert(claim)
+                .map(claimed -> true)
+                // claimed by an earlier request - maybe on another instance, or before a restart
+                .onErrorResume(DuplicateKeyException.class, ex -> Mono.just(false))
+                .flatMap(claimed -> claimed
+                        ? create(claim, status, create)
+                        : existing(key, requestHash, status, create).switchIfEmpty(Mono.error(() -> inProgress(key))));
+    }
+
+    /**
+     * The claim is released if the create fails or is cancelled, so the client can try again. Once the create
+     * has succeeded it never is - a retry would create twice. If storing the response fails the claim stays
+     * in progress until in-progress-timeout
+     */
+    private Mono<IdempotentResult<Review>> create(IdempotencyRecord claim, int status, Supplier<Mono<Review>> create) {
+        var created = new AtomicBoolean();
+        return create.get()
+                .doOnNext(review -> created.set(true))
+                .onErrorResume(ex -> release(claim).then(Mono.error(ex)))
+                .doOnCancel(() -> {
+                    if (!created.get()) {
+                        release(claim).subscribe();
+                    }
+                })
+                .flatMap(review -> idempotencyRecordRepository.complete(claim, status, review)
+                        .doOnNext(completed -> {
+                            if (!completed) {
+                                log.warn("Idempotency claim {} was taken over before its create completed", claim.getKey());
+                            }
+                        })
+                        .onErrorResume(ex -> {
+                            log.warn("Response for idempotency key {} not stored", claim.getKey(), ex);
+                            return Mono.empty();
+                        })
+                        .thenReturn(new IdempotentResult<>(status, review, false)));
+    }
+
+    /**
+     * What an earlier request with the key left: its stored response, or a conflict while its claim is still in
+     * progress. A claim older than in-progress-timeout is taken to belong to a request that died, and is taken over.
+     * Empty when there is no record
+     */
+    private Mono<IdempotentResult<Review>> existing(String key, String requestHash, int status,
+                                                    Supplier<Mono<Review>> create) {
+        return idempotencyRecordRepository.findById(key)
+                .flatMap(record -> {
+                    // records stored before request hashes were kept have none, and match any body
+                    if (record.getRequestHash() != null && !record.getRequestHash().equals(requestHash)) {
+                        return Mono.error(new IdempotencyKeyReusedException(
+                                IDEMPOTENCY_KEY + " was already used with a different request : " + key));
+                    }
+                    if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                        lookupsReplayed.increment();
+                        return Mono.just(new IdempotentResult<>(record.getResponseStatus(), record.getResponse(), true));
+                    }
+                    if (record.getCreatedAt().isBefore(Instant.now().minus(inProgressTimeout))) {
+                        return idempotencyRecordRepository
+                                .takeOver(record, requestHash, Instant.now().truncatedTo(ChronoUnit.MILLIS))
+                                .flatMap(claim -> create(claim, status, create))
+                                .switchIfEmpty(Mono.error(() -> inProgress(key)));
+                    }
+                    return Mono.error(inProgress(key));
+                });
+    }
+
+    private Mono<Void> release(IdempotencyRecord claim) {
+        return idempotencyRecordRepository.release(claim)
+                .onErrorResume(ex -> {
+                    log.warn("Idempotency key {} not released, free again after in-progress-timeout", claim.getKey(), ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private String requestHash(Review request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Request not hashed", ex);
+        }
+    }
+
+    private static IdempotencyConflictException inProgress(String key) {
+        return new IdempotencyConflictException("A request with this " + IDEMPOTENCY_KEY + " is still in progress : " + key);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder(LOOKUPS)
+                .tag("result", result)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,15 @@
+package com.reactivespring.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The response of a create, and whether it is the stored one of an earlier request with the same key
+ */
+@Data
+@AllArgsConstructor
+public class IdempotentResult<T> {
+    private Integer status;
+    private T response;
+    private boolean replayed;
+}
@@ -0,0 +1,96 @@
+package com.reactivespring.idempotency;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the Idempotency-Keys seen lately. No means the key was never seen by this instance,
+ * yes may be wrong at the configured false positive rate.
+ * Bits cannot be cleared, so the filter is two generations - keys go into the current one, lookups check both,
+ * and once a generation is older than the record TTL the previous one is dropped
+ */
+public class SeenKeysBloomFilter {
+
+    private final int bitCount;
+    private final int hashCount;
+    private final long generationNanos;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    public SeenKeysBloomFilter(long expectedKeys, double falsePositiveRate, Duration generationTtl) {
+        var bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 63);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+        this.generationNanos = generationTtl.toNanos();
+        this.current = new Generation(bitCount, System.nanoTime());
+        this.previous = new Generation(bitCount, System.nanoTime());
+    }
+
+    public boolean mightContain(String key) {
+        var hash = hash(key);
+        return current.mightContain(hash, hashCount, bitCount) || previous.mightContain(hash, hashCount, bitCount);
+    }
+
+    public void put(String key) {
+        rotateIfDue();
+        current.put(hash(key), hashCount, bitCount);
+    }
+
+    private void rotateIfDue() {
+        var now = System.nanoTime();
+        if (now - current.createdAt < generationNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (now - current.createdAt >= generationNanos) {
+                previous = current;
+                current = new Generation(bitCount, now);
+            }
+        }
+    }
+
+    // 64 bit FNV-1a, split into the two halves the k bit positions are derived from
+    private static long hash(String key) {
+        var hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class Generation {
+        private final AtomicLongArray words;
+        private final long createdAt;
+
+        private Generation(int bitCount, long createdAt) {
+            this.words = new AtomicLongArray((bitCount + 63) / 64);
+            this.createdAt = createdAt;
+        }
+
+        private boolean mightContain(long hash, int hashCount, int bitCount) {
+            for (int i = 0; i < hashCount; i++) {
+                var bit = bit(hash, i, bitCount);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // lock free - a bit once set stays set, so racing setters only ever add
+        private void put(long hash, int hashCount, int bitCount) {
+            for (int i = 0; i < hashCount; i++) {
+                var bit = bit(hash, i, bitCount);
+                var mask = 1L << bit;
+                words.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+            }
+        }
+
+        private static int bit(long hash, int i, int bitCount) {
+            var combined = (int) hash + i * (int) (hash >>> 32);
+            return (combined & Integer.MAX_VALUE) % bitCount;
+        }
+    }
+}
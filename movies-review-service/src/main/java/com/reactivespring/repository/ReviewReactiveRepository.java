@@ -0,0 +1,31 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewReactiveRepositoryCustom {
+
+    int STREAM_BATCH_SIZE = 100;
+
+    /**
+     * Streams the whole collection, fetching documents from the cursor in batches
+     */
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<Review> streamAllBy();
+
+    /**
+     * Both the filter and the sort are covered by the movieInfoId_reviewId compound index
+     */
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<Review> findReviewsByMovieInfoIdOrderByReviewId(Long movieInfoId);
+
+    /**
+     * One $in query for the reviews of several movies, walking the same compound index
+     */
+    @Meta(cursorBatchSize = STREAM_BATCH_SIZE)
+    Flux<Review> findReviewsByMovieInfoIdInOrderByMovieInfoIdAscReviewIdAsc(Collection<Long> movieInfoIds);
+}
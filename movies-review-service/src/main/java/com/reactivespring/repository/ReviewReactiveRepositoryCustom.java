@@ -0,0 +1,47 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSearchHit;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    /**
+     * $bucket over the rated reviews of one movie, read through the movieInfoId_rating index.
+     * Only the non-empty buckets come back, in boundary order
+     */
+    Flux<RatingBucket> countRatingsByBucket(Long movieInfoId, List<Double> boundaries);
+
+    /**
+     * Highest rated reviews of one movie, ties in reviewId order - a walk of the first entries of the movieInfoId_rating index
+     */
+    Flux<Review> findTopRated(Long movieInfoId, int limit);
+
+    /**
+     * $text search of the comments through the text index, best text score first, ties in reviewId order.
+     * Only the hits ranked after afterScore / afterReviewId when those are given, movieInfoId scopes when not null.
+     * The hits come back without a cursor
+     */
+    Flux<ReviewSearchHit> searchComments(String text, Long movieInfoId, Double afterScore, String afterReviewId, int limit);
+
+    /**
+     * The whole collection, fetched from the cursor batchSize documents at a time
+     */
+    Flux<Review> streamAll(int batchSize);
+
+    /**
+     * Sets the comment and rating in a single findAndModify and returns the review as it was before, empty when
+     * there is none. Concurrent updates each see the rating the one before them left
+     */
+    Mono<Review> updateCommentAndRating(String reviewId, String comment, Double rating);
+
+    /**
+     * Removes the review in a single findAndRemove and returns it, empty when there was none - of two concurrent
+     * deletes only one gets the review back
+     */
+    Mono<Review> removeById(String reviewId);
+}
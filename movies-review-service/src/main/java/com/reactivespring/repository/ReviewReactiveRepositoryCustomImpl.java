@@ -0,0 +1,133 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSearchHit;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    // $bucket needs every value placed - ratings under the first boundary land here
+    static final String BELOW_FIRST_BOUNDARY = "below";
+
+    static final String SCORE = "score";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewReactiveRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<RatingBucket> countRatingsByBucket(Long movieInfoId, List<Double> boundaries) {
+        // the last bucket is open ended
+        var bucketBoundaries = new ArrayList<Object>(boundaries);
+        bucketBoundaries.add(Double.POSITIVE_INFINITY);
+        var aggregation = Aggregation.newAggregation(Review.class,
+                Aggregation.match(ratedReviewsOf(movieInfoId)),
+                Aggregation.bucket("rating")
+                        .withBoundaries(bucketBoundaries.toArray())
+                        .withDefaultBucket(BELOW_FIRST_BOUNDARY)
+                        .andOutputCount().as("count"));
+        return reactiveMongoTemplate.aggregate(aggregation, Document.class)
+                .map(bucket -> toRatingBucket(bucket, boundaries));
+    }
+
+    @Override
+    public Flux<Review> findTopRated(Long movieInfoId, int limit) {
+        var aggregation = Aggregation.newAggregation(Review.class,
+                Aggregation.match(ratedReviewsOf(movieInfoId)),
+                Aggregation.sort(Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("reviewId"))),
+                Aggregation.limit(limit));
+        return reactiveMongoTemplate.aggregate(aggregation, Review.class);
+    }
+
+    @Override
+    public Flux<ReviewSearchHit> searchComments(String text, Long movieInfoId, Double afterScore, String afterReviewId,
+                                                int limit) {
+        var operations = new ArrayList<AggregationOperation>();
+        // $text has to be in the first stage, a movieInfoId $match right after it is merged into that stage
+        operations.add(Aggregation.match(TextCriteria.forDefaultLanguage().matching(text)));
+        if (movieInfoId != null) {
+            operations.add(Aggregation.match(Criteria.where("movieInfoId").is(movieInfoId)));
+        }
+        operations.add(context -> new Document("$addFields", new Document(SCORE, new Document("$meta", "textScore"))));
+        if (afterScore != null) {
+            operations.add(Aggregation.match(new Criteria().orOperator(
+                    Criteria.where(SCORE).lt(afterScore),
+                    new Criteria().andOperator(Criteria.where(SCORE).is(afterScore), idAfter(afterReviewId)))));
+        }
+        // $sort followed by $limit keeps only the top limit hits while sorting
+        operations.add(Aggregation.sort(Sort.by(Sort.Order.desc(SCORE), Sort.Order.asc("_id"))));
+        operations.add(Aggregation.limit(limit));
+
+        // untyped - _id and score are compared as given, not mapped through Review
+        return reactiveMongoTemplate.aggregate(Aggregation.newAggregation(operations),
+                        reactiveMongoTemplate.getCollectionName(Review.class), Document.class)
+                .map(hit -> new ReviewSearchHit(reactiveMongoTemplate.getConverter().read(Review.class, hit),
+                        ((Number) hit.get(SCORE)).doubleValue(), null));
+    }
+
+    @Override
+    public Flux<Review> streamAll(int batchSize) {
+        return reactiveMongoTemplate.find(new Query().cursorBatchSize(batchSize), Review.class);
+    }
+
+    @Override
+    public Mono<Review> updateCommentAndRating(String reviewId, String comment, Double rating) {
+        var update = new Update()
+                .set("comment", comment)
+                .set("rating", rating);
+        return reactiveMongoTemplate.findAndModify(Query.query(Criteria.where("reviewId").is(reviewId)), update,
+                FindAndModifyOptions.options().returnNew(false), Review.class);
+    }
+
+    @Override
+    public Mono<Review> removeById(String reviewId) {
+        return reactiveMongoTemplate.findAndRemove(Query.query(Criteria.where("reviewId").is(reviewId)), Review.class);
+    }
+
+    /**
+     * Ids are stored as ObjectId when they are one and as strings otherwise, and strings sort before ObjectIds.
+     * $gt only compares within one type, so after a string id every ObjectId is also after it
+     */
+    private static Criteria idAfter(String reviewId) {
+        if (ObjectId.isValid(reviewId)) {
+            return Criteria.where("_id").gt(new ObjectId(reviewId));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("_id").gt(reviewId),
+                Criteria.where("_id").type(BsonType.OBJECT_ID.getValue()));
+    }
+
+    private static Criteria ratedReviewsOf(Long movieInfoId) {
+        return Criteria.where("movieInfoId").is(movieInfoId).and("rating").ne(null);
+    }
+
+    private static RatingBucket toRatingBucket(Document bucket, List<Double> boundaries) {
+        var count = ((Number) bucket.get("count")).longValue();
+        var id = bucket.get("_id");
+        if (BELOW_FIRST_BOUNDARY.equals(id)) {
+            return new RatingBucket(null, boundaries.get(0), count);
+        }
+        var minRating = ((Number) id).doubleValue();
+        var next = boundaries.indexOf(minRating) + 1;
+        return new RatingBucket(minRating, next < boundaries.size() ? boundaries.get(next) : null, count);
+    }
+}
@@ -0,0 +1,25 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewStats;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+public interface ReviewStatsRepositoryCustom {
+
+    /**
+     * Applies the $inc / $min / $max update in a single findAndModify round trip and returns the updated aggregates.
+     * With upsert the aggregates of a movie's first review are created
+     */
+    Mono<ReviewStats> findAndUpdate(Long movieInfoId, Update update, boolean upsert);
+
+    /**
+     * Recomputes one movie's aggregates from its reviews, through the movieInfoId_reviewId index.
+     * Empty, and the aggregates removed, when the movie has no reviews left
+     */
+    Mono<ReviewStats> recompute(Long movieInfoId);
+
+    /**
+     * Recomputes every movie's aggregates from the raw reviews and swaps them in with $out
+     */
+    Mono<Void> rebuildAll();
+}
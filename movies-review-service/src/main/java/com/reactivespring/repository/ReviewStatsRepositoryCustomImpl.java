@@ -0,0 +1,61 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+public class ReviewStatsRepositoryCustomImpl implements ReviewStatsRepositoryCustom {
+
+    /**
+     * Same fields as ReviewStats, _id being the movieInfoId. A missing or null rating is counted as a review only
+     */
+    static final AggregationOperation GROUP_BY_MOVIE = context -> Document.parse("{ '$group': {"
+            + " '_id': '$movieInfoId',"
+            + " 'count': { '$sum': 1 },"
+            + " 'ratingCount': { '$sum': { '$cond': [ { '$gt': [ '$rating', null ] }, 1, 0 ] } },"
+            + " 'ratingSum': { '$sum': '$rating' },"
+            + " 'minRating': { '$min': '$rating' },"
+            + " 'maxRating': { '$max': '$rating' } } }");
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewStatsRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<ReviewStats> findAndUpdate(Long movieInfoId, Update update, boolean upsert) {
+        return reactiveMongoTemplate.findAndModify(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), update,
+                FindAndModifyOptions.options().returnNew(true).upsert(upsert), ReviewStats.class);
+    }
+
+    @Override
+    public Mono<ReviewStats> recompute(Long movieInfoId) {
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("movieInfoId").is(movieInfoId)),
+                GROUP_BY_MOVIE);
+        return reactiveMongoTemplate.aggregate(aggregation, Review.class, ReviewStats.class)
+                .next()
+                .flatMap(reactiveMongoTemplate::save)
+                .switchIfEmpty(Mono.defer(() -> reactiveMongoTemplate
+                        .remove(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), ReviewStats.class)
+                        .then(Mono.empty())));
+    }
+
+    @Override
+    public Mono<Void> rebuildAll() {
+        var aggregation = Aggregation.newAggregation(
+                GROUP_BY_MOVIE,
+                Aggregation.out(reactiveMongoTemplate.getCollectionName(ReviewStats.class)));
+        return reactiveMongoTemplate.aggregate(aggregation, Review.class, ReviewStats.class)
+                .then();
+    }
+}
@@ -0,0 +1,185 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.reactivespring.domain.Review;
+import com.reactivespring.filter.TokenBucket;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk export of every review as gzip compressed NDJSON. Reviews are read from the cursor batch-size at a time,
+ * at most max-reviews-per-second across all running exports, and each batch is serialized and compressed straight
+ * into one buffer of the response's buffer factory - pooled on Netty. Neither the reviews nor the JSON are ever
+ * held in full
+ */
+@Service
+public class ReviewExportService {
+
+    static final int GZIP_BUFFER_SIZE = 8192;
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private ObjectWriter objectWriter;
+
+    private int batchSize;
+
+    // one token per batch, shared by all exports - null when unthrottled
+    private TokenBucket throttle;
+
+    public ReviewExportService(ReviewReactiveRepository reviewReactiveRepository, ObjectMapper objectMapper,
+                               @Value("${review.export.batch-size:1000}") int batchSize,
+                               @Value("${review.export.max-reviews-per-second:0}") int maxReviewsPerSecond) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        // the gzip stream is written on after every review, Jackson must neither close nor flush it
+        this.objectWriter = objectMapper.writerFor(Review.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        this.batchSize = batchSize;
+        this.throttle = maxReviewsPerSecond > 0 ? new TokenBucket((double) maxReviewsPerSecond / batchSize, 1) : null;
+    }
+
+    /**
+     * Every review, the next batch only read from the cursor once the throttle lets it through
+     */
+    public Flux<Review> reviews() {
+        var reviews = reviewReactiveRepository.streamAll(batchSize)
+                .limitRate(batchSize);
+        if (throttle == null) {
+            return reviews;
+        }
+        return reviews.buffer(batchSize)
+                .concatMap(batch -> acquire().thenMany(Flux.fromIterable(batch)), 1);
+    }
+
+    /**
+     * One gzip member over the whole export - a buffer per batch of reviews, holding what the deflater
+     * has produced so far, and the gzip trailer last
+     */
+    public Flux<DataBuffer> encode(Flux<Review> reviews, DataBufferFactory bufferFactory) {
+        return Flux.using(() -> new GzipNdjsonEncoder(objectWriter, bufferFactory),
+                encoder -> reviews.buffer(batchSize)
+                        .map(encoder::encode)
+                        .concatWith(Mono.fromCallable(encoder::finish))
+                        // the deflater keeps small batches to itself until it has a block worth writing
+                        .filter(buffer -> {
+                            if (buffer.readableByteCount() > 0) {
+                                return true;
+                            }
+                            DataBufferUtils.release(buffer);
+                            return false;
+                        }),
+                GzipNdjsonEncoder::close);
+    }
+
+    private Mono<Void> acquire() {
+        return Mono.defer(() -> {
+            // the scheduler's clock, so that virtual time in tests moves the throttle along
+            var wait = throttle.tryAcquire(Schedulers.parallel().now(TimeUnit.NANOSECONDS));
+            return wait == 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(wait)).then(acquire());
+        });
+    }
+
+    /**
+     * One review per line through a single GZIPOutputStream, whose output lands in whichever buffer
+     * the current batch is encoded into
+     */
+    static class GzipNdjsonEncoder {
+
+        private final ObjectWriter objectWriter;
+        private final DataBufferFactory bufferFactory;
+        private final GZIPOutputStream gzip;
+        private DataBuffer target;
+
+        GzipNdjsonEncoder(ObjectWriter objectWriter, DataBufferFactory bufferFactory) throws IOException {
+            this.objectWriter = objectWriter;
+            this.bufferFactory = bufferFactory;
+            this.target = bufferFactory.allocateBuffer(GZIP_BUFFER_SIZE);
+            this.gzip = new GZIPOutputStream(new TargetOutputStream(), GZIP_BUFFER_SIZE);
+        }
+
+        DataBuffer encode(List<Review> batch) {
+            return write(() -> {
+                for (var review : batch) {
+                    objectWriter.writeValue(gzip, review);
+                    gzip.write('\n');
+                }
+            });
+        }
+
+        DataBuffer finish() {
+            return write(gzip::finish);
+        }
+
+        /**
+         * The gzip header written by the constructor goes out with the first batch
+         */
+        private DataBuffer write(IOAction action) {
+            if (target == null) {
+                target = bufferFactory.allocateBuffer(GZIP_BUFFER_SIZE);
+            }
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            var written = target;
+            target = null;
+            return written;
+        }
+
+        /**
+         * Completed, failed or cancelled - frees a buffer that was not handed out, and the deflater
+         */
+        void close() {
+            if (target != null) {
+                DataBufferUtils.release(target);
+                target = null;
+            }
+            try {
+                // a no-op once finished, otherwise the trailer goes nowhere with the target gone
+                gzip.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private class TargetOutputStream extends OutputStream {
+
+            @Override
+            public void write(int b) {
+                if (target != null) {
+                    target.write((byte) b);
+                }
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                if (target != null) {
+                    target.write(bytes, offset, length);
+                }
+            }
+        }
+
+        @FunctionalInterface
+        private interface IOAction {
+            void run() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.RatingHistogram;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Rating histogram and top rated reviews of a movie, computed by Mongo - only the buckets and the top N reviews
+ * are read, never all the reviews of the movie
+ */
+@Service
+public class ReviewRankingService {
+
+    static final int MAX_TOP_LIMIT = 100;
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private List<Double> boundaries;
+
+    public ReviewRankingService(ReviewReactiveRepository reviewReactiveRepository,
+                                @Value("${review.histogram.boundaries:1,2,3,4,5}") List<Double> boundaries) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.boundaries = List.copyOf(boundaries);
+    }
+
+    /**
+     * One bucket per boundary, the last one open ended, plus a leading one when a rating falls below the first boundary
+     */
+    public Mono<RatingHistogram> getRatingHistogram(Long movieInfoId) {
+        return reviewReactiveRepository.countRatingsByBucket(movieInfoId, boundaries)
+                .collectList()
+                .map(counted -> new RatingHistogram(movieInfoId, withEmptyBuckets(counted)));
+    }
+
+    public Flux<Review> getTopRated(Long movieInfoId, int limit) {
+        if (limit < 1 || limit > MAX_TOP_LIMIT) {
+            return Flux.error(new ReviewDataException("limit must be between 1 and " + MAX_TOP_LIMIT + " : " + limit));
+        }
+        return reviewReactiveRepository.findTopRated(movieInfoId, limit);
+    }
+
+    // $bucket leaves out the empty buckets
+    private List<RatingBucket> withEmptyBuckets(List<RatingBucket> counted) {
+        var buckets = new ArrayList<RatingBucket>();
+        counted.stream()
+                .filter(bucket -> bucket.getMinRating() == null)
+                .findFirst()
+                .ifPresent(buckets::add);
+        for (int i = 0; i < boundaries.size(); i++) {
+            var minRating = boundaries.get(i);
+            var maxRating = i + 1 < boundaries.size() ? boundaries.get(i + 1) : null;
+            var count = counted.stream()
+                    .filter(bucket -> Objects.equals(bucket.getMinRating(), minRating))
+                    .mapToLong(RatingBucket::getCount)
+                    .sum();
+            buckets.add(new RatingBucket(minRating, maxRating, count));
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,78 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewSearchHit;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyword search over the review comments, served by the text index - never a scan of the collection.
+ * Pages are keyset paginated on (score, reviewId): a page starts right after the cursor of the last hit seen,
+ * so a deep page costs no more than the first one and no hit is skipped or repeated between pages
+ */
+@Service
+public class ReviewSearchService {
+
+    static final int MAX_QUERY_LENGTH = 256;
+    static final int MAX_SEARCH_LIMIT = 100;
+
+    private static final char CURSOR_SEPARATOR = ':';
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    public ReviewSearchService(ReviewReactiveRepository reviewReactiveRepository) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+    }
+
+    /**
+     * @param movieInfoId null searches the reviews of every movie
+     * @param after       cursor of the last hit of the previous page, null for the first page
+     */
+    public Flux<ReviewSearchHit> search(String query, Long movieInfoId, String after, int limit) {
+        if (query == null || query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            return Flux.error(new ReviewDataException("q must be between 1 and " + MAX_QUERY_LENGTH + " characters"));
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return Flux.error(new ReviewDataException("limit must be between 1 and " + MAX_SEARCH_LIMIT + " : " + limit));
+        }
+        Double afterScore = null;
+        String afterReviewId = null;
+        if (after != null) {
+            var cursor = decodeCursor(after);
+            var separator = cursor == null ? -1 : cursor.indexOf(CURSOR_SEPARATOR);
+            afterScore = separator < 0 ? null : toScore(cursor.substring(0, separator));
+            if (afterScore == null) {
+                return Flux.error(new ReviewDataException("Invalid search cursor : " + after));
+            }
+            afterReviewId = cursor.substring(separator + 1);
+        }
+        return reviewReactiveRepository.searchComments(query, movieInfoId, afterScore, afterReviewId, limit)
+                .map(hit -> new ReviewSearchHit(hit.getReview(), hit.getScore(), encodeCursor(hit)));
+    }
+
+    // Double.toString round-trips exactly, the next page compares the score for equality
+    static String encodeCursor(ReviewSearchHit hit) {
+        var cursor = hit.getScore().toString() + CURSOR_SEPARATOR + hit.getReview().getReviewId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String after) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Double toScore(String score) {
+        try {
+            return Double.valueOf(score);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodic repair of the rating aggregates, off unless reviewstats.rebuild.cron is set
+ */
+@Component
+@Slf4j
+public class ReviewStatsRebuildJob {
+
+    private ReviewStatsService reviewStatsService;
+
+    public ReviewStatsRebuildJob(ReviewStatsService reviewStatsService) {
+        this.reviewStatsService = reviewStatsService;
+    }
+
+    @Scheduled(cron = "${reviewstats.rebuild.cron:-}")
+    public void rebuild() {
+        log.info("Rebuilding review stats");
+        // scheduler thread, not an event loop - blocking until the $out is done is fine here
+        reviewStatsService.rebuild().block();
+    }
+}
@@ -0,0 +1,109 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps ReviewStats in step with the review writes, so reading a movie's aggregates is a single lookup.
+ * The review write and the aggregate update are separate writes - rebuild() repairs any drift
+ */
+@Service
+public class ReviewStatsService {
+
+    private ReviewStatsRepository reviewStatsRepository;
+
+    public ReviewStatsService(ReviewStatsRepository reviewStatsRepository) {
+        this.reviewStatsRepository = reviewStatsRepository;
+    }
+
+    public Mono<ReviewStats> getReviewStats(Long movieInfoId) {
+        return reviewStatsRepository.findById(movieInfoId)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId));
+    }
+
+    public Mono<Void> reviewAdded(Review review) {
+        return reviewStatsRepository.findAndUpdate(review.getMovieInfoId(), added(List.of(review)), true).then();
+    }
+
+    /**
+     * One update per movie, however many of the reviews belong to it
+     */
+    public Mono<Void> reviewsAdded(List<Review> reviews) {
+        var reviewsByMovie = reviews.stream().collect(Collectors.groupingBy(Review::getMovieInfoId));
+        return Flux.fromIterable(reviewsByMovie.entrySet())
+                .concatMap(movieReviews -> reviewStatsRepository.findAndUpdate(movieReviews.getKey(),
+                        added(movieReviews.getValue()), true))
+                .then();
+    }
+
+    public Mono<Void> reviewUpdated(Review review, Double previousRating) {
+        var rating = review.getRating();
+        if (Objects.equals(rating, previousRating)) {
+            return Mono.empty();
+        }
+        var update = new Update()
+                .inc("ratingCount", (rating != null ? 1L : 0L) - (previousRating != null ? 1L : 0L))
+                .inc("ratingSum", (rating != null ? rating : 0.0) - (previousRating != null ? previousRating : 0.0));
+        if (rating != null) {
+            update.min("minRating", rating).max("maxRating", rating);
+        }
+        return reviewStatsRepository.findAndUpdate(review.getMovieInfoId(), update, false)
+                .map(reviewStats -> wasExtreme(reviewStats, previousRating))
+                .defaultIfEmpty(true) // no aggregates yet
+                .flatMap(recompute -> recompute(review.getMovieInfoId(), recompute));
+    }
+
+    public Mono<Void> reviewDeleted(Review review) {
+        var update = new Update().inc("count", -1L);
+        var rating = review.getRating();
+        if (rating != null) {
+            update.inc("ratingCount", -1L).inc("ratingSum", -rating);
+        }
+        return reviewStatsRepository.findAndUpdate(review.getMovieInfoId(), update, false)
+                .map(reviewStats -> reviewStats.getCount() <= 0 || wasExtreme(reviewStats, rating))
+                .defaultIfEmpty(true) // no aggregates yet
+                .flatMap(recompute -> recompute(review.getMovieInfoId(), recompute));
+    }
+
+    public Mono<Void> rebuild() {
+        return reviewStatsRepository.rebuildAll();
+    }
+
+    private static Update added(List<Review> reviews) {
+        var update = new Update().inc("count", (long) reviews.size());
+        var ratings = reviews.stream()
+                .map(Review::getRating)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (!ratings.isEmpty()) {
+            update.inc("ratingCount", (long) ratings.size())
+                    .inc("ratingSum", ratings.stream().mapToDouble(Double::doubleValue).sum())
+                    .min("minRating", Collections.min(ratings))
+                    .max("maxRating", Collections.max(ratings));
+        }
+        return update;
+    }
+
+    private Mono<Void> recompute(Long movieInfoId, boolean recompute) {
+        return recompute ? reviewStatsRepository.recompute(movieInfoId).then() : Mono.empty();
+    }
+
+    /**
+     * $min / $max cannot be undone - when the rating that went away was the min or max, only a recompute
+     * over that movie's reviews knows the new one
+     */
+    private static boolean wasExtreme(ReviewStats reviewStats, Double removedRating) {
+        return removedRating != null
+                && (removedRating.equals(reviewStats.getMinRating()) || removedRating.equals(reviewStats.getMaxRating()));
+    }
+}
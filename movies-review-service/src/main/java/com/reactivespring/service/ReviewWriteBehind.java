@@ -0,0 +1,276 @@
+package com.reactivespring.service;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewConflictException;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exception.ReviewWriteTimeoutException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind for POST /v1/reviews - accepted reviews wait in a bounded queue and go to Mongo as one
+ * insertMany once batch-size of them are queued or flush-interval has passed, whichever is first.
+ * Off unless review.write-behind.enabled=true
+ */
+@Component
+@Slf4j
+public class ReviewWriteBehind {
+
+    public enum Ack {
+        /**
+         * 202 as soon as the review is queued - it is lost if the process dies before the next flush
+         */
+        ENQUEUE,
+        /**
+         * 201 once the batch holding the review is written, 503 if that takes longer than ack-timeout
+         */
+        DURABLE
+    }
+
+    static final String FLUSH_SIZE = "review.writebehind.flush.size";
+    static final String QUEUE_DEPTH = "review.writebehind.queue.depth";
+    static final String REJECTED = "review.writebehind.rejected";
+    static final String FAILED = "review.writebehind.failed";
+
+    private static final Duration OFFER_RETRY_DELAY = Duration.ofMillis(10);
+
+    // stackless, one instance answers every rejection
+    private static final ReviewQueueFullException QUEUE_FULL =
+            new ReviewQueueFullException("Review queue is full, please retry later");
+
+    private final ReviewReactiveRepository reviewReactiveRepository;
+    private final ReviewStatsService reviewStatsService;
+    private final boolean enabled;
+    private final Ack ack;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final long offerRetries;
+    private final Duration ackTimeout;
+    private final Duration drainTimeout;
+
+    private final BlockingQueue<PendingReview> queue;
+    private final Sinks.Many<Boolean> flushRequests = Sinks.many().multicast().directBestEffort();
+    private final Sinks.One<Boolean> shutdown = Sinks.one();
+    private final DistributionSummary flushSize;
+    private final Counter rejected;
+    private final Counter failed;
+
+    private volatile boolean accepting;
+    private CompletableFuture<Void> stopped;
+
+    public ReviewWriteBehind(ReviewReactiveRepository reviewReactiveRepository, ReviewStatsService reviewStatsService,
+                             @Value("${review.write-behind.enabled:false}") boolean enabled,
+                             @Value("${review.write-behind.ack:durable}") Ack ack,
+                             @Value("${review.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${review.write-behind.batch-size:500}") int batchSize,
+                             @Value("${review.write-behind.flush-interval:100ms}") Duration flushInterval,
+                             @Value("${review.write-behind.offer-timeout:0ms}") Duration offerTimeout,
+                             @Value("${review.write-behind.ack-timeout:5s}") Duration ackTimeout,
+                             @Value("${review.write-behind.drain-timeout:30s}") Duration drainTimeout,
+                             MeterRegistry meterRegistry) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.enabled = enabled;
+        this.ack = ack;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerRetries = offerTimeout.toMillis() / OFFER_RETRY_DELAY.toMillis();
+        this.ackTimeout = ackTimeout;
+        this.drainTimeout = drainTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushSize = DistributionSummary.builder(FLUSH_SIZE)
+                .description("reviews written per insertMany")
+                .register(meterRegistry);
+        Gauge.builder(QUEUE_DEPTH, queue, BlockingQueue::size)
+                .description("reviews accepted and not yet flushed")
+                .register(meterRegistry);
+        this.rejected = Counter.builder(REJECTED)
+                .description("reviews turned away with a 503, the queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder(FAILED)
+                .description("queued reviews that could not be written")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Ack getAck() {
+        return ack;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        accepting = true;
+        // one flush at a time - ticks arriving while a flush runs are dropped, the flush picks their reviews up
+        stopped = Flux.merge(Flux.interval(flushInterval), flushRequests.asFlux())
+                .takeUntilOther(shutdown.asMono())
+                .onBackpressureDrop()
+                .concatMap(tick -> flushBatches(() -> queue.size() >= batchSize), 1)
+                .then(Mono.defer(() -> flushBatches(() -> !queue.isEmpty())))
+                .toFuture();
+    }
+
+    /**
+     * Stops taking reviews, lets the flush in progress finish and writes whatever is still queued
+     */
+    @PreDestroy
+    public void stop() throws Exception {
+        if (stopped == null) {
+            return;
+        }
+        accepting = false;
+        shutdown.tryEmitValue(true);
+        stopped.get(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("review write-behind drained, {} reviews left behind", queue.size());
+    }
+
+    /**
+     * Queues the review, with its reviewId assigned up front so it can be returned before it is written.
+     * While the queue is full the offer is retried for up to offer-timeout, then fails with ReviewQueueFullException.
+     * With ack=durable the wait for the write is bounded by ack-timeout - the review stays queued and is still written
+     */
+    public Mono<Review> submit(Review review) {
+        if (review.getReviewId() == null) {
+            review.setReviewId(new ObjectId().toHexString());
+        }
+        var pending = new PendingReview(review);
+        var offer = Mono.fromSupplier(() -> accepting && queue.offer(pending))
+                .filter(Boolean::booleanValue);
+        if (offerRetries > 0) {
+            // a completed companion ends the repeat before the first attempt, hence no take(0)
+            offer = offer.repeatWhenEmpty(retries -> retries.take(offerRetries).delayElements(OFFER_RETRY_DELAY));
+        }
+        return offer
+                .switchIfEmpty(Mono.error(() -> {
+                    rejected.increment();
+                    return QUEUE_FULL;
+                }))
+                .doOnNext(queued -> {
+                    if (queue.size() >= batchSize) {
+                        flushRequests.tryEmitNext(true);
+                    }
+                })
+                .then(ack == Ack.DURABLE ? durable(pending) : Mono.just(review));
+    }
+
+    private Mono<Review> durable(PendingReview pending) {
+        return pending.written.asMono()
+                .timeout(ackTimeout, Mono.error(() -> new ReviewWriteTimeoutException(
+                        "Review " + pending.review.getReviewId() + " is queued and not yet written")));
+    }
+
+    /**
+     * At least one batch, then more while the condition holds
+     */
+    private Mono<Void> flushBatches(BooleanSupplier more) {
+        return Mono.defer(this::flushBatch)
+                .repeat(more)
+                .then();
+    }
+
+    private Mono<Void> flushBatch() {
+        var batch = new ArrayList<PendingReview>(batchSize);
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        flushSize.record(batch.size());
+        return insert(batch);
+    }
+
+    private Mono<Void> insert(List<PendingReview> batch) {
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        var reviews = batch.stream().map(pending -> pending.review).collect(Collectors.toList());
+
+        return reviewReactiveRepository.insert(reviews)
+                .then(Mono.defer(() -> written(batch)))
+                .onErrorResume(ex -> {
+                    var bulkWriteException = findCause(ex, MongoBulkWriteException.class);
+                    if (bulkWriteException == null || bulkWriteException.getWriteErrors().isEmpty()) {
+                        batch.forEach(pending -> failed(pending, ex));
+                        return Mono.empty();
+                    }
+                    // ordered insert - everything before the failed index was written, nothing after it was tried
+                    var writeError = bulkWriteException.getWriteErrors().get(0);
+                    var failedAt = writeError.getIndex();
+                    var failedReview = batch.get(failedAt);
+                    failed(failedReview, ErrorCategory.fromErrorCode(writeError.getCode()) == ErrorCategory.DUPLICATE_KEY
+                            ? new ReviewConflictException("Review already exists for the given Review Id : " + failedReview.review.getReviewId())
+                            : bulkWriteException);
+                    return written(batch.subList(0, failedAt))
+                            .then(insert(batch.subList(failedAt + 1, batch.size())));
+                });
+    }
+
+    /**
+     * Stats are updated once per movie for the batch. A failure there does not fail the written reviews,
+     * the rebuild repairs the aggregates
+     */
+    private Mono<Void> written(List<PendingReview> batch) {
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        var reviews = batch.stream().map(pending -> pending.review).collect(Collectors.toList());
+        return reviewStatsService.reviewsAdded(reviews)
+                .onErrorResume(ex -> {
+                    log.warn("Review stats not updated for {} written reviews", reviews.size(), ex);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> batch.forEach(pending -> pending.written.tryEmitValue(pending.review)));
+    }
+
+    private void failed(PendingReview pending, Throwable ex) {
+        failed.increment();
+        log.error("Queued review {} could not be written", pending.review.getReviewId(), ex);
+        pending.written.tryEmitError(ex);
+    }
+
+    private static <T extends Throwable> T findCause(Throwable ex, Class<T> type) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
+    private static class PendingReview {
+        private final Review review;
+        private final Sinks.One<Review> written = Sinks.one();
+
+        private PendingReview(Review review) {
+            this.review = review;
+        }
+    }
+}
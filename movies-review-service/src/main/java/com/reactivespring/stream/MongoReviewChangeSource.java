@@ -0,0 +1,43 @@
+package com.reactivespring.stream;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import com.reactivespring.domain.Review;
+import org.bson.BsonValue;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Change stream on the review collection - needs a replica set, a single-node one is enough.
+ * A resubscription resumes after the last event seen, so a dropped cursor does not lose changes
+ */
+@Component
+public class MongoReviewChangeSource implements ReviewChangeSource {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private volatile BsonValue resumeToken;
+
+    public MongoReviewChangeSource(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<Review> changes() {
+        return Flux.defer(() -> reactiveMongoTemplate.changeStream(Review.class)
+                        .withOptions(options -> {
+                            // updates carry only the changed fields unless the current document is looked up
+                            options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+                            if (resumeToken != null) {
+                                options.resumeAfter(resumeToken);
+                            }
+                        })
+                        .filter(where("operationType").in("insert", "update", "replace"))
+                        .listen())
+                .doOnNext(event -> resumeToken = event.getResumeToken())
+                .map(ChangeStreamEvent::getBody);
+    }
+}
@@ -0,0 +1,63 @@
+package com.reactivespring.stream;
+
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One ReviewChangeSource subscription shared by every /v1/reviews/stream/{movieInfoId} subscriber and filtered
+ * per movie in memory - a thousand viewers of one movie cost one change stream cursor.
+ * The cursor is opened with the first subscriber and closed idle-timeout after the last one leaves
+ */
+@Component
+@Slf4j
+public class ReviewChangeFeed {
+
+    static final String SUBSCRIBERS = "review.stream.subscribers";
+
+    private final Flux<Review> changes;
+    private final int subscriberBufferSize;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public ReviewChangeFeed(ReviewChangeSource reviewChangeSource,
+                            @Value("${review.stream.subscriber-buffer-size:256}") int subscriberBufferSize,
+                            @Value("${review.stream.idle-timeout:30s}") Duration idleTimeout,
+                            @Value("${review.stream.retry-backoff:1s}") Duration retryBackoff,
+                            MeterRegistry meterRegistry) {
+        this.changes = reviewChangeSource.changes()
+                // an error or a closed cursor reconnects instead of ending every subscriber's stream
+                .repeatWhen(completed -> completed.delayElements(retryBackoff))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, retryBackoff)
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Review change stream failed, reconnecting", signal.failure())))
+                .publish()
+                .refCount(1, idleTimeout);
+        this.subscriberBufferSize = subscriberBufferSize;
+        Gauge.builder(SUBSCRIBERS, subscribers, AtomicInteger::get)
+                .description("clients on /v1/reviews/stream, all sharing one change stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * New and updated reviews of one movie, from now on.
+     * Each subscriber has its own bounded buffer; a slow one loses its oldest reviews instead of holding up the others
+     */
+    public Flux<Review> reviews(Long movieInfoId) {
+        return changes
+                .filter(review -> movieInfoId.equals(review.getMovieInfoId()))
+                .onBackpressureBuffer(subscriberBufferSize,
+                        review -> log.warn("Dropped review {} for a slow subscriber of movie {}", review.getReviewId(), movieInfoId),
+                        BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+}
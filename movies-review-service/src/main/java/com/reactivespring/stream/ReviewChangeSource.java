@@ -0,0 +1,13 @@
+package com.reactivespring.stream;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Flux;
+
+/**
+ * Where ReviewChangeFeed gets inserted and updated reviews from - a Mongo change stream in the application,
+ * an in-process publisher in tests. Subscribed to once per ReviewChangeFeed connection, whatever the number of clients
+ */
+public interface ReviewChangeSource {
+
+    Flux<Review> changes();
+}
@@ -1,4 +1,471 @@
 package com.reactivespring.routes;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.RatingHistogram;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSearchHit;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.repository.IdempotencyRecordRepository;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
 public class ReviewsIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    @BeforeEach
+    void setUp() {
+        var reviewsList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review("abc", 2L, "Excellent Movie", 8.0));
+        reviewReactiveRepository.saveAll(reviewsList)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
+        idempotencyRecordRepository.deleteAll().block();
+    }
+
+    @Test
+    void addReview() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var savedReview = reviewEntityExchangeResult.getResponseBody();
+                    assert savedReview != null;
+                    assertNotNull(savedReview.getReviewId());
+                });
+    }
+
+    @Test
+    void addReview_idempotencyKey() {
+        var review = new Review(null, 7L, "Awesome Movie", 9.0);
+
+        var created = webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "review-7-awesome")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .doesNotExist(IdempotencyService.IDEMPOTENT_REPLAYED)
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+        assert created != null;
+
+        // the client timed out and retries
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "review-7-awesome")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .valueEquals(IdempotencyService.IDEMPOTENT_REPLAYED, "true")
+                .expectBody(Review.class)
+                .isEqualTo(created);
+
+        // the same key with a different review
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "review-7-awesome")
+                .bodyValue(new Review(null, 7L, "Awful Movie", 2.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(422)
+                .expectBody(String.class)
+                .isEqualTo("Idempotency-Key was already used with a different request : review-7-awesome");
+
+        assertReviewStats(7L, 1, 9.0, 9.0, 9.0);
+    }
+
+    @Test
+    void getReviews() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+    }
+
+    @Test
+    void getReviews_byMovieInfoId() {
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL).queryParam("movieInfoId", 1L).build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var reviews = listEntityExchangeResult.getResponseBody();
+                    assert reviews != null;
+                    assertEquals(2, reviews.size());
+                    assertTrue(reviews.stream().allMatch(review -> review.getMovieInfoId() == 1L));
+                    // _id order, as kept by the compound index
+                    var reviewIds = reviews.stream().map(Review::getReviewId).collect(Collectors.toList());
+                    assertEquals(reviewIds.stream().sorted().collect(Collectors.toList()), reviewIds);
+                });
+    }
+
+    @Test
+    void getReviews_byMovieInfoIds() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds=2,1,3")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var reviews = listEntityExchangeResult.getResponseBody();
+                    assert reviews != null;
+                    assertEquals(List.of(1L, 1L, 2L),
+                            reviews.stream().map(Review::getMovieInfoId).collect(Collectors.toList()));
+                });
+    }
+
+    @Test
+    void exportReviews() throws IOException {
+        var compressed = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/export")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assert compressed != null;
+
+        try (var lines = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8))) {
+            var reviews = lines.lines()
+                    .map(line -> {
+                        try {
+                            return objectMapper.readValue(line, Review.class);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+            assertEquals(3, reviews.size());
+            assertTrue(reviews.stream().anyMatch(review -> "abc".equals(review.getReviewId())));
+        }
+    }
+
+    @Test
+    void updateReview() {
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, 2L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .isEqualTo(new Review("abc", 2L, "Not an Awesome Movie", 8.0));
+    }
+
+    @Test
+    void deleteReview() {
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void reviewStats_maintainedOnWrites() {
+        var first = addReview(new Review(null, 7L, "Awesome Movie", 9.0));
+        addReview(new Review(null, 7L, "Average Movie", 5.0));
+        assertReviewStats(7L, 2, 14.0, 5.0, 9.0);
+
+        // the max goes away - recomputed from the remaining reviews
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", first.getReviewId())
+                .bodyValue(new Review(null, 7L, "Good Movie", 6.0))
+                .exchange()
+                .expectStatus()
+                .isOk();
+        assertReviewStats(7L, 2, 11.0, 5.0, 6.0);
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", first.getReviewId())
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+        assertReviewStats(7L, 1, 5.0, 5.0, 5.0);
+    }
+
+    @Test
+    void reviewStats_rebuild() {
+        // the reviews of setUp were saved without going through the handler
+        assertReviewStats(1L, 0, 0.0, null, null);
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/stats/rebuild")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        assertReviewStats(1L, 2, 18.0, 9.0, 9.0);
+        assertReviewStats(2L, 1, 8.0, 8.0, 8.0);
+    }
+
+    @Test
+    void findReviewsByMovieInfoId_usesIndex() {
+        var explain = reactiveMongoTemplate.getCollection("review")
+                .flatMap(collection -> Mono.from(collection.find(new Document("movieInfoId", 1L))
+                        .sort(new Document("_id", 1))
+                        .explain()))
+                .block();
+        assert explain != null;
+
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(winningPlan.contains("movieInfoId_reviewId"), winningPlan);
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+        assertFalse(winningPlan.contains("SORT\""), winningPlan);
+    }
+
+    @Test
+    void getRatingHistogram() {
+        reviewReactiveRepository.saveAll(List.of(
+                new Review(null, 3L, "Bad", 0.5),
+                new Review(null, 3L, "Fine", 3.0),
+                new Review(null, 3L, "Good", 3.5),
+                new Review(null, 3L, "Great", 9.0),
+                new Review(null, 3L, "No rating", null))).blockLast();
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/histogram/{movieInfoId}", 3L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(RatingHistogram.class)
+                .isEqualTo(new RatingHistogram(3L, List.of(
+                        new RatingBucket(null, 1.0, 1L),
+                        new RatingBucket(1.0, 2.0, 0L),
+                        new RatingBucket(2.0, 3.0, 0L),
+                        new RatingBucket(3.0, 4.0, 2L),
+                        new RatingBucket(4.0, 5.0, 0L),
+                        new RatingBucket(5.0, null, 1L))));
+    }
+
+    @Test
+    void getTopRatedReviews() {
+        reviewReactiveRepository.saveAll(List.of(
+                new Review("r1", 3L, "Good", 7.0),
+                new Review("r2", 3L, "Great", 9.0),
+                new Review("r3", 3L, "Also great", 9.0),
+                new Review("r4", 3L, "No rating", null))).blockLast();
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top/{movieInfoId}?limit=2", 3L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .value(reviews -> assertEquals(List.of("r2", "r3"),
+                        reviews.stream().map(Review::getReviewId).collect(Collectors.toList())));
+    }
+
+    @Test
+    void searchReviews_pagedByCursor() {
+        reviewReactiveRepository.saveAll(List.of(
+                new Review("s1", 4L, "Gripping plot, gripping score", 9.0),
+                new Review("s2", 4L, "A gripping movie", 8.0),
+                new Review("s3", 4L, "Gripping", 7.0),
+                new Review("s4", 5L, "Gripping too", 6.0),
+                new Review("s5", 4L, "Dull", 2.0))).blockLast();
+
+        var firstPage = searchReviews("/search?q=gripping&movieInfoId=4&limit=2");
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.get(0).getScore() >= firstPage.get(1).getScore());
+
+        var secondPage = searchReviews("/search?q=gripping&movieInfoId=4&limit=2&after=" + firstPage.get(1).getCursor());
+        assertEquals(1, secondPage.size());
+
+        var reviewIds = Flux.concat(Flux.fromIterable(firstPage), Flux.fromIterable(secondPage))
+                .map(hit -> hit.getReview().getReviewId())
+                .collectList()
+                .block();
+        assert reviewIds != null;
+        assertEquals(Set.of("s1", "s2", "s3"), Set.copyOf(reviewIds));
+
+        assertEquals(4, searchReviews("/search?q=gripping").size());
+    }
+
+    /**
+     * Change streams need a replica set - the test profile runs the embedded mongo as a single-node one,
+     * against a standalone server the test is skipped
+     */
+    @Test
+    void streamReviews_fromChangeStream() {
+        var isMaster = reactiveMongoTemplate.executeCommand("{isMaster: 1}").block();
+        assumeTrue(isMaster != null && isMaster.containsKey("setName"), "change streams need a replica set");
+
+        // the cursor opens asynchronously and the response is only committed with the first event -
+        // keep writing until the stream picks one up
+        var writer = Flux.interval(Duration.ofMillis(200))
+                .concatMap(tick -> reviewReactiveRepository.save(new Review(null, tick % 2 == 0 ? 2L : 3L, "Premiere", 9.0)))
+                .subscribe();
+        try {
+            var streamed = webTestClient
+                    .mutate()
+                    .responseTimeout(Duration.ofSeconds(10))
+                    .build()
+                    .get()
+                    .uri(REVIEWS_URL + "/stream/{movieInfoId}", 3L)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .returnResult(Review.class)
+                    .getResponseBody();
+
+            StepVerifier.create(streamed.take(1))
+                    .assertNext(review -> {
+                        assertEquals(3L, review.getMovieInfoId());
+                        assertEquals("Premiere", review.getComment());
+                    })
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(10));
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private List<ReviewSearchHit> searchReviews(String uri) {
+        return webTestClient
+                .get()
+                .uri(REVIEWS_URL + uri)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(ReviewSearchHit.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private Review addReview(Review review) {
+        return webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private void assertReviewStats(Long movieInfoId, long count, Double ratingSum, Double minRating, Double maxRating) {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats/{movieInfoId}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewStats.class)
+                .consumeWith(reviewStatsEntityExchangeResult -> {
+                    var reviewStats = reviewStatsEntityExchangeResult.getResponseBody();
+                    assert reviewStats != null;
+                    assertEquals(count, reviewStats.getCount());
+                    assertEquals(ratingSum, reviewStats.getRatingSum());
+                    assertEquals(minRating, reviewStats.getMinRating());
+                    assertEquals(maxRating, reviewStats.getMaxRating());
+                });
+    }
 }
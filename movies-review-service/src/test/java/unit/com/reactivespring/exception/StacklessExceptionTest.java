@@ -0,0 +1,28 @@
+package com.reactivespring.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StacklessExceptionTest {
+
+    @Test
+    void noStackTraceNorSuppressed() {
+        var ex = new ReviewNotFoundException("Review not found for the given Review Id : abc");
+        ex.addSuppressed(new IllegalStateException("checkpoint"));
+
+        assertEquals(0, ex.getStackTrace().length);
+        assertEquals(0, ex.getSuppressed().length);
+        assertEquals(404, ex.getStatus());
+    }
+
+    @Test
+    void bodyEncodedOnce() {
+        var ex = new ReviewQueueFullException("Review queue is full, please retry later");
+
+        assertArrayEquals("Review queue is full, please retry later".getBytes(StandardCharsets.UTF_8), ex.getBody());
+        assertSame(ex.getBody(), ex.getBody());
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.ReviewNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GlobalErrorHandlerTest {
+
+    GlobalErrorHandler globalErrorHandler = new GlobalErrorHandler();
+
+    @Test
+    void expectedError_ownStatusAndMessage() {
+        var exchange = handle(new ReviewNotFoundException("Review Not Found for the given Review Id : abc"));
+
+        assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+        assertEquals("Review Not Found for the given Review Id : abc", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void unexpectedError_detailNotSent() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews/export"));
+        exchange.getResponse().getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        globalErrorHandler.handle(exchange, new IllegalStateException("Command failed with error 13 (Unauthorized)")).block();
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exchange.getResponse().getStatusCode());
+        assertEquals("Internal Server Error", exchange.getResponse().getBodyAsString().block());
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void committedResponse_errorPassedOn() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews/export"));
+        exchange.getResponse().setComplete().block();
+        var error = new IllegalStateException("cursor killed");
+
+        StepVerifier.create(globalErrorHandler.handle(exchange, error))
+                .expectErrorMatches(ex -> ex == error)
+                .verify();
+    }
+
+    private MockServerWebExchange handle(Throwable ex) {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews/abc"));
+        globalErrorHandler.handle(exchange, ex).block();
+        return exchange;
+    }
+}
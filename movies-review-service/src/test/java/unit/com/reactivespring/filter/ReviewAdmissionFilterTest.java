@@ -0,0 +1,115 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.exception.ReviewRateLimitedException;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewAdmissionFilterTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    WebFilterChain completed = exchange -> Mono.empty();
+
+    @Test
+    void filter_clientOverItsRate() {
+        var filter = filter(2, 10, "X-Client-Id");
+
+        StepVerifier.create(filter.filter(post("client-a"), completed)).verifyComplete();
+        StepVerifier.create(filter.filter(post("client-a"), completed)).verifyComplete();
+        StepVerifier.create(filter.filter(post("client-a"), completed))
+                .expectError(ReviewRateLimitedException.class)
+                .verify();
+        // other clients have their own bucket
+        StepVerifier.create(filter.filter(post("client-b"), completed)).verifyComplete();
+
+        assertEquals(1.0, meterRegistry.get(ReviewAdmissionFilter.REJECTED).tag("reason", "rate").counter().count());
+    }
+
+    @Test
+    void filter_clientHeaderNotTrustedByDefault() {
+        var filter = filter(1, 10, "");
+
+        StepVerifier.create(filter.filter(post("client-a"), completed)).verifyComplete();
+        // a fresh header value does not buy a fresh bucket, the remote address is the client
+        StepVerifier.create(filter.filter(post("client-b"), completed))
+                .expectError(ReviewRateLimitedException.class)
+                .verify();
+        StepVerifier.create(filter.filter(post("client-c", "10.0.0.2"), completed)).verifyComplete();
+    }
+
+    @Test
+    void filter_readsNotLimited() {
+        var filter = filter(1, 10);
+
+        for (int i = 0; i < 5; i++) {
+            var get = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/reviews").header("X-Client-Id", "client-a"));
+            StepVerifier.create(filter.filter(get, completed)).verifyComplete();
+        }
+    }
+
+    @Test
+    void filter_tooManyInFlight() {
+        var filter = filter(100, 1);
+        Sinks.Empty<Void> write = Sinks.empty();
+
+        StepVerifier.create(filter.filter(post("client-a"), exchange -> write.asMono()))
+                .then(() -> {
+                    StepVerifier.create(filter.filter(post("client-b"), completed))
+                            .expectError(ReviewRateLimitedException.class)
+                            .verify();
+                    assertEquals(1.0, meterRegistry.get(ReviewAdmissionFilter.IN_FLIGHT).gauge().value());
+                    write.tryEmitEmpty();
+                })
+                .verifyComplete();
+
+        assertEquals(0.0, meterRegistry.get(ReviewAdmissionFilter.IN_FLIGHT).gauge().value());
+        StepVerifier.create(filter.filter(post("client-b"), completed)).verifyComplete();
+        assertEquals(1.0, meterRegistry.get(ReviewAdmissionFilter.REJECTED).tag("reason", "concurrency").counter().count());
+    }
+
+    @Test
+    void filter_rejectionIs429WithRetryAfter() {
+        var filter = filter(1, 10);
+        filter.filter(post("client-a"), completed).block();
+
+        var exchange = post("client-a");
+        filter.filter(exchange, completed)
+                .onErrorResume(ex -> new GlobalErrorHandler().handle(exchange, ex))
+                .block();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals("1", exchange.getResponse().getHeaders().getFirst("Retry-After"));
+    }
+
+    private ReviewAdmissionFilter filter(int burst, int maxInFlight) {
+        return filter(burst, maxInFlight, "");
+    }
+
+    private ReviewAdmissionFilter filter(int burst, int maxInFlight, String clientHeader) {
+        return new ReviewAdmissionFilter(true, 1, burst, maxInFlight, clientHeader, 1_000,
+                Duration.ofMinutes(1), meterRegistry);
+    }
+
+    private static MockServerWebExchange post(String client) {
+        return post(client, "10.0.0.1");
+    }
+
+    private static MockServerWebExchange post(String client, String remoteAddress) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/v1/reviews")
+                .header("X-Client-Id", client)
+                .remoteAddress(new InetSocketAddress(remoteAddress, 40000)));
+    }
+}
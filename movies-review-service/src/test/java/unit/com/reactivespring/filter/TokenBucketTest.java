@@ -0,0 +1,63 @@
+package com.reactivespring.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_burstThenRate() {
+        var tokenBucket = new TokenBucket(2, 3);
+        var now = 1_000 * SECOND;
+
+        assertEquals(0, tokenBucket.tryAcquire(now));
+        assertEquals(0, tokenBucket.tryAcquire(now));
+        assertEquals(0, tokenBucket.tryAcquire(now));
+        // empty - the next token is half a second away at 2 a second
+        assertEquals(SECOND / 2, tokenBucket.tryAcquire(now));
+
+        assertEquals(0, tokenBucket.tryAcquire(now + SECOND / 2));
+        assertTrue(tokenBucket.tryAcquire(now + SECOND / 2) > 0);
+    }
+
+    @Test
+    void tryAcquire_refillsUpToBurstOnly() {
+        var tokenBucket = new TokenBucket(10, 2);
+        var now = 1_000 * SECOND;
+        assertEquals(0, tokenBucket.tryAcquire(now));
+
+        var later = now + 60 * SECOND;
+        assertEquals(0, tokenBucket.tryAcquire(later));
+        assertEquals(0, tokenBucket.tryAcquire(later));
+        assertTrue(tokenBucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void tryAcquire_concurrentTakersNeverOverdraw() throws InterruptedException {
+        var tokenBucket = new TokenBucket(1, 1_000);
+        var now = 1_000 * SECOND;
+        var taken = new AtomicInteger();
+        var threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (tokenBucket.tryAcquire(now) == 0) {
+                        taken.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1_000, taken.get());
+    }
+}
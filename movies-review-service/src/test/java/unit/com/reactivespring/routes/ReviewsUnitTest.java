@@ -1,4 +1,576 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.config.CodecConfig;
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.RatingHistogram;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSearchHit;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.IdempotencyConflictException;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.idempotency.IdempotencyService;
+import com.reactivespring.idempotency.IdempotentResult;
+import com.reactivespring.metrics.EndpointMetrics;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.service.ReviewExportService;
+import com.reactivespring.service.ReviewRankingService;
+import com.reactivespring.service.ReviewSearchService;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehind;
+import com.reactivespring.stream.ReviewChangeFeed;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class,
+        CodecConfig.class, EndpointMetrics.class, SimpleMeterRegistry.class})
+@AutoConfigureWebTestClient
 public class ReviewsUnitTest {
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @MockBean
+    ReviewStatsService reviewStatsService;
+
+    @MockBean
+    ReviewRankingService reviewRankingService;
+
+    @MockBean
+    ReviewSearchService reviewSearchService;
+
+    @MockBean
+    ReviewExportService reviewExportService;
+
+    @MockBean
+    ReviewWriteBehind reviewWriteBehind;
+
+    @MockBean
+    IdempotencyService idempotencyService;
+
+    @MockBean
+    ReviewChangeFeed reviewChangeFeed;
+
+    @Test
+    void addReview() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewReactiveRepository.insert(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsService.reviewAdded(isA(Review.class))).thenReturn(Mono.empty());
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var savedReview = reviewEntityExchangeResult.getResponseBody();
+                    assert savedReview != null;
+                    assertEquals("abc", savedReview.getReviewId());
+                });
+
+        verify(reviewStatsService).reviewAdded(new Review("abc", 1L, "Awesome Movie", 9.0));
+    }
+
+    @Test
+    void addReview_reviewIdTaken_conflict() {
+        when(reviewReactiveRepository.insert(isA(Review.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review("abc", 1L, "Awesome Movie", 9.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409)
+                .expectBody(String.class)
+                .isEqualTo("Review already exists for the given Review Id : abc");
+
+        verifyNoInteractions(reviewStatsService);
+    }
+
+    @Test
+    void addReview_writeBehind_ackOnEnqueue() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewWriteBehind.isEnabled()).thenReturn(true);
+        when(reviewWriteBehind.getAck()).thenReturn(ReviewWriteBehind.Ack.ENQUEUE);
+        when(reviewWriteBehind.submit(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isAccepted()
+                .expectBody(Review.class)
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var queuedReview = reviewEntityExchangeResult.getResponseBody();
+                    assert queuedReview != null;
+                    assertEquals("abc", queuedReview.getReviewId());
+                });
+
+        verifyNoInteractions(reviewReactiveRepository, reviewStatsService);
+    }
+
+    @Test
+    void addReview_writeBehind_queueFull() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewWriteBehind.isEnabled()).thenReturn(true);
+        when(reviewWriteBehind.getAck()).thenReturn(ReviewWriteBehind.Ack.DURABLE);
+        when(reviewWriteBehind.submit(isA(Review.class)))
+                .thenReturn(Mono.error(new ReviewQueueFullException("Review queue is full, please retry later")));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(503)
+                .expectHeader()
+                .valueEquals("Retry-After", "1")
+                .expectBody(String.class)
+                .isEqualTo("Review queue is full, please retry later");
+    }
+
+    @Test
+    void addReview_idempotencyKeyReplayed() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(idempotencyService.execute(eq("key-1"), any(), eq(201), any())).thenReturn(Mono.just(
+                new IdempotentResult<>(201, new Review("abc", 1L, "Awesome Movie", 9.0), true)));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "key-1")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .valueEquals(IdempotencyService.IDEMPOTENT_REPLAYED, "true")
+                .expectBody(Review.class)
+                .isEqualTo(new Review("abc", 1L, "Awesome Movie", 9.0));
+
+        verifyNoInteractions(reviewReactiveRepository, reviewStatsService);
+    }
+
+    @Test
+    void addReview_idempotencyKeyInProgress() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(idempotencyService.execute(eq("key-1"), any(), eq(201), any())).thenReturn(Mono.error(
+                new IdempotencyConflictException("A request with this Idempotency-Key is still in progress : key-1")));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .header(IdempotencyService.IDEMPOTENCY_KEY, "key-1")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409)
+                .expectBody(String.class)
+                .isEqualTo("A request with this Idempotency-Key is still in progress : key-1");
+    }
+
+    @Test
+    void addReview_validation() {
+        var review = new Review(null, null, "Awesome Movie", -9.0);
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.movieInfoId : must not be null," +
+                        "rating.negative : rating is negative and please pass a non-negative value");
+
+        verify(reviewReactiveRepository, never()).insert(isA(Review.class));
+    }
+
+    @Test
+    void getReviews_byMovieInfoId() {
+        var reviews = List.of(new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 1L, "Excellent Movie", 8.0));
+
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdOrderByReviewId(1L)).thenReturn(Flux.fromIterable(reviews));
+
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL).queryParam("movieInfoId", 1L).build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Review.class)
+                .isEqualTo(reviews);
+
+        verify(reviewReactiveRepository, never()).streamAllBy();
+    }
+
+    @Test
+    void getReviews_byMovieInfoIds() {
+        var reviews = List.of(new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 2L, "Excellent Movie", 8.0));
+
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdInOrderByMovieInfoIdAscReviewIdAsc(Set.of(1L, 2L)))
+                .thenReturn(Flux.fromIterable(reviews));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds=1,2,1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .isEqualTo(reviews);
+    }
+
+    @Test
+    void getReviews_tooManyMovieInfoIds() {
+        var movieInfoIds = LongStream.range(0, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds={movieInfoIds}", movieInfoIds)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfoIds must name between 1 and 100 movies : 101");
+    }
+
+    @Test
+    void getReviews_smile() {
+        var reviews = List.of(new Review("abc", 1L, "Awesome Movie", 9.0));
+
+        when(reviewReactiveRepository.streamAllBy()).thenReturn(Flux.fromIterable(reviews));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .accept(CodecConfig.APPLICATION_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(CodecConfig.APPLICATION_SMILE)
+                .expectBodyList(Review.class)
+                .isEqualTo(reviews);
+    }
+
+    @Test
+    void getReviews_invalidMovieInfoId() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfoId must be a number : abc");
+    }
+
+    @Test
+    void updateReview() {
+        when(reviewReactiveRepository.updateCommentAndRating("abc", "Not an Awesome Movie", 8.0))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsService.reviewUpdated(isA(Review.class), eq(9.0))).thenReturn(Mono.empty());
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .isEqualTo(new Review("abc", 1L, "Not an Awesome Movie", 8.0));
+
+        verify(reviewStatsService).reviewUpdated(new Review("abc", 1L, "Not an Awesome Movie", 8.0), 9.0);
+    }
+
+    @Test
+    void updateReview_notFound() {
+        when(reviewReactiveRepository.updateCommentAndRating("abc", "Not an Awesome Movie", 8.0)).thenReturn(Mono.empty());
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("Review not found for the given Review Id : abc");
+    }
+
+    @Test
+    void deleteReview() {
+        var review = new Review("abc", 1L, "Awesome Movie", 9.0);
+        when(reviewReactiveRepository.removeById("abc")).thenReturn(Mono.just(review));
+        when(reviewStatsService.reviewDeleted(review)).thenReturn(Mono.empty());
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(reviewReactiveRepository).removeById("abc");
+        verify(reviewStatsService).reviewDeleted(review);
+    }
+
+    @Test
+    void deleteReview_alreadyRemoved_statsUntouched() {
+        // a concurrent delete removed it first
+        when(reviewReactiveRepository.removeById("abc")).thenReturn(Mono.empty());
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        verifyNoInteractions(reviewStatsService);
+    }
+
+    @Test
+    void getReviewStats() {
+        when(reviewStatsService.getReviewStats(1L)).thenReturn(Mono.just(new ReviewStats(1L, 3L, 2L, 17.0, 8.0, 9.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats/{movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(3)
+                .jsonPath("$.minRating").isEqualTo(8.0)
+                .jsonPath("$.maxRating").isEqualTo(9.0)
+                .jsonPath("$.averageRating").isEqualTo(8.5);
+    }
+
+    @Test
+    void rebuildReviewStats() {
+        when(reviewStatsService.rebuild()).thenReturn(Mono.empty());
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/stats/rebuild")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(reviewStatsService).rebuild();
+    }
+
+    @Test
+    void getRatingHistogram() {
+        var histogram = new RatingHistogram(1L, List.of(
+                new RatingBucket(1.0, 2.0, 0L),
+                new RatingBucket(2.0, null, 3L)));
+        when(reviewRankingService.getRatingHistogram(1L)).thenReturn(Mono.just(histogram));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/histogram/1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(RatingHistogram.class)
+                .isEqualTo(histogram);
+    }
+
+    @Test
+    void getTopRatedReviews() {
+        when(reviewRankingService.getTopRated(1L, 2)).thenReturn(Flux.just(
+                new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 1L, "Excellent Movie", 8.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top/1?limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getTopRatedReviews_defaultLimit() {
+        when(reviewRankingService.getTopRated(1L, 10)).thenReturn(Flux.empty());
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top/1")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        verify(reviewRankingService).getTopRated(1L, 10);
+    }
+
+    @Test
+    void getTopRatedReviews_invalidLimit() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top/1?limit=ten")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("limit must be a number : ten");
+    }
+
+    @Test
+    void searchReviews() {
+        when(reviewSearchService.search("awesome", 1L, "MS41OmFiYw", 2)).thenReturn(Flux.just(
+                new ReviewSearchHit(new Review("def", 1L, "Awesome Movie", 9.0), 1.1, "MS4xOmRlZg"),
+                new ReviewSearchHit(new Review("ghi", 1L, "Awesome", 8.0), 0.75, "MC43NTpnaGk")));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/search?q=awesome&movieInfoId=1&after=MS41OmFiYw&limit=2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(ReviewSearchHit.class)
+                .isEqualTo(List.of(
+                        new ReviewSearchHit(new Review("def", 1L, "Awesome Movie", 9.0), 1.1, "MS4xOmRlZg"),
+                        new ReviewSearchHit(new Review("ghi", 1L, "Awesome", 8.0), 0.75, "MC43NTpnaGk")));
+    }
+
+    @Test
+    void searchReviews_defaults() {
+        when(reviewSearchService.search("awesome", null, null, 20)).thenReturn(Flux.empty());
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/search?q=awesome")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        verify(reviewSearchService).search("awesome", null, null, 20);
+    }
+
+    @Test
+    void searchReviews_invalidQuery() {
+        when(reviewSearchService.search(null, null, null, 20))
+                .thenReturn(Flux.error(new ReviewDataException("q must be between 1 and 256 characters")));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/search")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("q must be between 1 and 256 characters");
+    }
+
+    @Test
+    void exportReviews() throws IOException {
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("{\"reviewId\":\"abc\"}\n".getBytes(StandardCharsets.UTF_8));
+        }
+        when(reviewExportService.reviews()).thenReturn(Flux.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewExportService.encode(any(), any())).thenAnswer(invocation -> invocation.<Flux<Review>>getArgument(0)
+                .thenMany(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(compressed.toByteArray()))));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/export")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .expectHeader()
+                .valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .isEqualTo(compressed.toByteArray());
+    }
+
+    @Test
+    void streamReviews() {
+        when(reviewChangeFeed.reviews(1L)).thenReturn(Flux.just(
+                new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("abc", 1L, "Awesome Movie, updated", 8.5)));
+
+        var reviews = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream/1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(Review.class)
+                .getResponseBody();
+
+        StepVerifier.create(reviews)
+                .expectNextMatches(review -> review.getRating() == 9.0)
+                .expectNextMatches(review -> review.getRating() == 8.5)
+                .verifyComplete();
+    }
 }
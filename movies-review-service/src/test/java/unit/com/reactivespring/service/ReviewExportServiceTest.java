@@ -0,0 +1,91 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ReviewExportServiceTest {
+
+    ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void encode_gzipNdjson() throws IOException {
+        var reviewExportService = new ReviewExportService(reviewReactiveRepository, objectMapper, 2, 0);
+        var reviews = IntStream.range(0, 5)
+                .mapToObj(i -> new Review("r" + i, 1L, "Awesome Movie " + i, 9.0))
+                .collect(Collectors.toList());
+
+        var buffers = reviewExportService.encode(Flux.fromIterable(reviews), new DefaultDataBufferFactory())
+                .collectList()
+                .block();
+        assert buffers != null;
+
+        var lines = gunzip(buffers).lines().collect(Collectors.toList());
+        assertEquals(5, lines.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(reviews.get(i), objectMapper.readValue(lines.get(i), Review.class));
+        }
+    }
+
+    @Test
+    void encode_empty() throws IOException {
+        var reviewExportService = new ReviewExportService(reviewReactiveRepository, objectMapper, 2, 0);
+
+        var buffers = reviewExportService.encode(Flux.empty(), new DefaultDataBufferFactory())
+                .collectList()
+                .block();
+        assert buffers != null;
+
+        assertEquals("", gunzip(buffers));
+    }
+
+    @Test
+    void reviews_throttledPerBatch() {
+        when(reviewReactiveRepository.streamAll(2)).thenReturn(Flux.range(0, 6)
+                .map(i -> new Review("r" + i, 1L, "Awesome Movie", 9.0)));
+
+        // 4 reviews a second in batches of 2 - a batch every half second
+        StepVerifier.withVirtualTime(() -> new ReviewExportService(reviewReactiveRepository, objectMapper, 2, 4).reviews())
+                .expectSubscription()
+                .expectNextCount(2)
+                .expectNoEvent(Duration.ofMillis(400))
+                .thenAwait(Duration.ofMillis(100))
+                .expectNextCount(2)
+                .thenAwait(Duration.ofMillis(500))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    private static String gunzip(List<DataBuffer> buffers) throws IOException {
+        var compressed = new ByteArrayOutputStream();
+        for (var buffer : buffers) {
+            var bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            compressed.write(bytes);
+            DataBufferUtils.release(buffer);
+        }
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
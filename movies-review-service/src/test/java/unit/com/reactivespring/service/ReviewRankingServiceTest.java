@@ -0,0 +1,76 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.RatingBucket;
+import com.reactivespring.domain.RatingHistogram;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class ReviewRankingServiceTest {
+
+    ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+    ReviewRankingService reviewRankingService;
+
+    List<Double> boundaries = List.of(1.0, 2.0, 3.0, 4.0, 5.0);
+
+    @BeforeEach
+    void setUp() {
+        reviewRankingService = new ReviewRankingService(reviewReactiveRepository, boundaries);
+    }
+
+    @Test
+    void getRatingHistogram_emptyBucketsFilledIn() {
+        when(reviewReactiveRepository.countRatingsByBucket(1L, boundaries)).thenReturn(Flux.just(
+                new RatingBucket(2.0, 3.0, 4L),
+                new RatingBucket(5.0, null, 7L)));
+
+        StepVerifier.create(reviewRankingService.getRatingHistogram(1L))
+                .expectNext(new RatingHistogram(1L, List.of(
+                        new RatingBucket(1.0, 2.0, 0L),
+                        new RatingBucket(2.0, 3.0, 4L),
+                        new RatingBucket(3.0, 4.0, 0L),
+                        new RatingBucket(4.0, 5.0, 0L),
+                        new RatingBucket(5.0, null, 7L))))
+                .verifyComplete();
+    }
+
+    @Test
+    void getRatingHistogram_belowFirstBoundary() {
+        when(reviewReactiveRepository.countRatingsByBucket(1L, boundaries)).thenReturn(Flux.just(
+                new RatingBucket(null, 1.0, 2L),
+                new RatingBucket(1.0, 2.0, 1L)));
+
+        StepVerifier.create(reviewRankingService.getRatingHistogram(1L))
+                .expectNextMatches(histogram -> histogram.getBuckets().size() == 6
+                        && histogram.getBuckets().get(0).equals(new RatingBucket(null, 1.0, 2L)))
+                .verifyComplete();
+    }
+
+    @Test
+    void getTopRated() {
+        when(reviewReactiveRepository.findTopRated(1L, 2)).thenReturn(Flux.just(
+                new Review("abc", 1L, "Awesome Movie", 9.0),
+                new Review("def", 1L, "Excellent Movie", 8.0)));
+
+        StepVerifier.create(reviewRankingService.getTopRated(1L, 2))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void getTopRated_limitOutOfRange() {
+        StepVerifier.create(reviewRankingService.getTopRated(1L, 101))
+                .expectErrorMessage("limit must be between 1 and 100 : 101")
+                .verify();
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+}
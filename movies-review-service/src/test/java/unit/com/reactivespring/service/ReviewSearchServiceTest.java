@@ -0,0 +1,57 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSearchHit;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ReviewSearchServiceTest {
+
+    ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+    ReviewSearchService reviewSearchService = new ReviewSearchService(reviewReactiveRepository);
+
+    @Test
+    void search_cursorOfTheLastHitContinuesTheSearch() {
+        var review = new Review("abc", 1L, "Awesome Movie", 9.0);
+        when(reviewReactiveRepository.searchComments("awesome", 1L, null, null, 1))
+                .thenReturn(Flux.just(new ReviewSearchHit(review, 1.1, null)));
+        when(reviewReactiveRepository.searchComments("awesome", 1L, 1.1, "abc", 1)).thenReturn(Flux.empty());
+
+        var hit = reviewSearchService.search("awesome", 1L, null, 1).blockFirst();
+        assert hit != null;
+        assertEquals(review, hit.getReview());
+        assertEquals(1.1, hit.getScore());
+
+        StepVerifier.create(reviewSearchService.search("awesome", 1L, hit.getCursor(), 1))
+                .verifyComplete();
+        verify(reviewReactiveRepository).searchComments("awesome", 1L, 1.1, "abc", 1);
+    }
+
+    @Test
+    void search_invalidQuery() {
+        StepVerifier.create(reviewSearchService.search(" ", null, null, 20))
+                .expectErrorMatches(ex -> ex instanceof ReviewDataException
+                        && ex.getMessage().equals("q must be between 1 and 256 characters"))
+                .verify();
+        StepVerifier.create(reviewSearchService.search("awesome", null, null, 101))
+                .expectErrorMatches(ex -> ex instanceof ReviewDataException
+                        && ex.getMessage().equals("limit must be between 1 and 100 : 101"))
+                .verify();
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void search_invalidCursor() {
+        StepVerifier.create(reviewSearchService.search("awesome", null, "bm90LWEtY3Vyc29y", 20))
+                .expectErrorMatches(ex -> ex instanceof ReviewDataException
+                        && ex.getMessage().equals("Invalid search cursor : bm90LWEtY3Vyc29y"))
+                .verify();
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+}
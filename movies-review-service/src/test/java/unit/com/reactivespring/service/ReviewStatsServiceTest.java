@@ -0,0 +1,118 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewStatsServiceTest {
+
+    @Mock
+    ReviewStatsRepository reviewStatsRepository;
+
+    @InjectMocks
+    ReviewStatsService reviewStatsService;
+
+    @Test
+    void getReviewStats_noReviews() {
+        when(reviewStatsRepository.findById(1L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reviewStatsService.getReviewStats(1L))
+                .expectNext(ReviewStats.empty(1L))
+                .verifyComplete();
+    }
+
+    @Test
+    void reviewAdded() {
+        var update = ArgumentCaptor.forClass(Update.class);
+        when(reviewStatsRepository.findAndUpdate(eq(1L), update.capture(), eq(true)))
+                .thenReturn(Mono.just(new ReviewStats(1L, 1L, 1L, 9.0, 9.0, 9.0)));
+
+        StepVerifier.create(reviewStatsService.reviewAdded(new Review("abc", 1L, "Awesome Movie", 9.0)))
+                .verifyComplete();
+
+        var updateObject = update.getValue().getUpdateObject();
+        assertEquals("Document{{count=1, ratingCount=1, ratingSum=9.0}}", updateObject.get("$inc").toString());
+        assertEquals("Document{{minRating=9.0}}", updateObject.get("$min").toString());
+        assertEquals("Document{{maxRating=9.0}}", updateObject.get("$max").toString());
+    }
+
+    @Test
+    void reviewsAdded_oneUpdatePerMovie() {
+        var update = ArgumentCaptor.forClass(Update.class);
+        when(reviewStatsRepository.findAndUpdate(anyLong(), update.capture(), eq(true)))
+                .thenReturn(Mono.just(ReviewStats.empty(1L)));
+
+        StepVerifier.create(reviewStatsService.reviewsAdded(List.of(
+                        new Review("abc", 1L, "Awesome Movie", 9.0),
+                        new Review("def", 1L, "Excellent Movie", 7.0),
+                        new Review("ghi", 1L, "No rating", null),
+                        new Review("jkl", 2L, "Good Movie", 8.0))))
+                .verifyComplete();
+
+        verify(reviewStatsRepository, times(2)).findAndUpdate(anyLong(), any(Update.class), eq(true));
+        var movie1 = update.getAllValues().get(0).getUpdateObject();
+        assertEquals("Document{{count=3, ratingCount=2, ratingSum=16.0}}", movie1.get("$inc").toString());
+        assertEquals("Document{{minRating=7.0}}", movie1.get("$min").toString());
+        assertEquals("Document{{maxRating=9.0}}", movie1.get("$max").toString());
+    }
+
+    @Test
+    void reviewUpdated_sameRating() {
+        StepVerifier.create(reviewStatsService.reviewUpdated(new Review("abc", 1L, "Awesome Movie", 9.0), 9.0))
+                .verifyComplete();
+
+        verifyNoInteractions(reviewStatsRepository);
+    }
+
+    @Test
+    void reviewUpdated_notExtreme() {
+        when(reviewStatsRepository.findAndUpdate(eq(1L), any(Update.class), eq(false)))
+                .thenReturn(Mono.just(new ReviewStats(1L, 3L, 3L, 22.0, 5.0, 9.0)));
+
+        StepVerifier.create(reviewStatsService.reviewUpdated(new Review("abc", 1L, "Awesome Movie", 8.0), 7.0))
+                .verifyComplete();
+
+        verify(reviewStatsRepository, never()).recompute(anyLong());
+    }
+
+    @Test
+    void reviewUpdated_previousWasMax() {
+        // 9.0 lowered to 6.0 - $max still says 9.0 and only the reviews know the new max
+        when(reviewStatsRepository.findAndUpdate(eq(1L), any(Update.class), eq(false)))
+                .thenReturn(Mono.just(new ReviewStats(1L, 2L, 2L, 11.0, 5.0, 9.0)));
+        when(reviewStatsRepository.recompute(1L)).thenReturn(Mono.just(new ReviewStats(1L, 2L, 2L, 11.0, 5.0, 6.0)));
+
+        StepVerifier.create(reviewStatsService.reviewUpdated(new Review("abc", 1L, "Awesome Movie", 6.0), 9.0))
+                .verifyComplete();
+
+        verify(reviewStatsRepository).recompute(1L);
+    }
+
+    @Test
+    void reviewDeleted_lastReview() {
+        when(reviewStatsRepository.findAndUpdate(eq(1L), any(Update.class), eq(false)))
+                .thenReturn(Mono.just(new ReviewStats(1L, 0L, 0L, 0.0, 9.0, 9.0)));
+        when(reviewStatsRepository.recompute(1L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reviewStatsService.reviewDeleted(new Review("abc", 1L, "Awesome Movie", 9.0)))
+                .verifyComplete();
+
+        verify(reviewStatsRepository).recompute(1L);
+    }
+}
@@ -0,0 +1,183 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewConflictException;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exception.ReviewWriteTimeoutException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReviewWriteBehindTest {
+
+    ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+    ReviewStatsService reviewStatsService = mock(ReviewStatsService.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    ReviewWriteBehind reviewWriteBehind;
+
+    @BeforeEach
+    void setUp() {
+        when(reviewReactiveRepository.insert(anyList()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Review>>getArgument(0)));
+        when(reviewStatsService.reviewsAdded(anyList())).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reviewWriteBehind.stop();
+    }
+
+    @Test
+    void submit_durable_flushedOnBatchSize() {
+        reviewWriteBehind = writeBehind(ReviewWriteBehind.Ack.DURABLE, 10, 2, Duration.ofHours(1));
+
+        StepVerifier.create(Flux.merge(
+                        reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0)),
+                        reviewWriteBehind.submit(new Review(null, 1L, "Excellent Movie", 7.0))))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(reviewReactiveRepository).insert(argThat((List<Review> reviews) -> reviews.size() == 2));
+        verify(reviewStatsService).reviewsAdded(argThat(reviews -> reviews.size() == 2));
+        assertEquals(1, meterRegistry.get(ReviewWriteBehind.FLUSH_SIZE).summary().count());
+        assertEquals(2.0, meterRegistry.get(ReviewWriteBehind.FLUSH_SIZE).summary().totalAmount());
+    }
+
+    @Test
+    void submit_durable_flushedOnInterval() {
+        reviewWriteBehind = writeBehind(ReviewWriteBehind.Ack.DURABLE, 10, 100, Duration.ofMillis(50));
+
+        StepVerifier.create(reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0)))
+                .assertNext(review -> assertNotNull(review.getReviewId()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void submit_enqueue_ackedBeforeTheWrite() {
+        reviewWriteBehind = writeBehind(ReviewWriteBehind.Ack.ENQUEUE, 10, 100, Duration.ofHours(1));
+
+        StepVerifier.create(reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0)))
+                .assertNext(review -> assertNotNull(review.getReviewId()))
+                .verifyComplete();
+
+        verifyNoInteractions(reviewReactiveRepository);
+        assertEquals(1.0, meterRegistry.get(ReviewWriteBehind.QUEUE_DEPTH).gauge().value());
+    }
+
+    @Test
+    void submit_queueFull() {
+        reviewWriteBehind = writeBehind(ReviewWriteBehind.Ack.ENQUEUE, 1, 100, Duration.ofHours(1));
+
+        reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+
+        StepVerifier.create(reviewWriteBehind.submit(new Review(null, 1L, "Excellent Movie", 7.0)))
+                .expectError(ReviewQueueFullException.class)
+                .verify();
+        assertEquals(1.0, meterRegistry.get(ReviewWriteBehind.REJECTED).counter().count());
+    }
+
+    @Test
+    void submit_queueFull_waitsForTheNextFlush() {
+        reviewWriteBehind = new ReviewWriteBehind(reviewReactiveRepository, reviewStatsService, true,
+                ReviewWriteBehind.Ack.ENQUEUE, 1, 100, Duration.ofMillis(50), Duration.ofSeconds(2),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), meterRegistry);
+        reviewWriteBehind.start();
+
+        reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+
+        StepVerifier.create(reviewWriteBehind.submit(new Review(null, 1L, "Excellent Movie", 7.0)))
+                .assertNext(review -> assertEquals("Excellent Movie", review.getComment()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0.0, meterRegistry.get(ReviewWriteBehind.REJECTED).counter().count());
+    }
+
+    @Test
+    void submit_durable_slowWrite_timesOut() {
+        when(reviewReactiveRepository.insert(anyList()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Review>>getArgument(0))
+                        .delaySubscription(Duration.ofMillis(500)));
+        reviewWriteBehind = new ReviewWriteBehind(reviewReactiveRepository, reviewStatsService, true,
+                ReviewWriteBehind.Ack.DURABLE, 10, 1, Duration.ofHours(1), Duration.ZERO, Duration.ofMillis(100),
+                Duration.ofSeconds(5), meterRegistry);
+        reviewWriteBehind.start();
+
+        StepVerifier.create(reviewWriteBehind.submit(new Review("abc", 1L, "Awesome Movie", 9.0)))
+                .expectErrorSatisfies(ex -> {
+                    assertTrue(ex instanceof ReviewWriteTimeoutException);
+                    assertEquals("Review abc is queued and not yet written", ex.getMessage());
+                })
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void submit_duplicateReviewId_failsOnlyThatReview() {
+        var writeError = new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1);
+        var bulkWriteException = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(writeError), null, new ServerAddress(), Collections.emptySet());
+        when(reviewReactiveRepository.insert(anyList()))
+                .thenReturn(Flux.error(new DuplicateKeyException("duplicate", bulkWriteException)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Review>>getArgument(0)));
+        reviewWriteBehind = writeBehind(ReviewWriteBehind.Ack.DURABLE, 10, 3, Duration.ofHours(1));
+
+        var first = reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0));
+        var duplicate = reviewWriteBehind.submit(new Review("abc", 1L, "Excellent Movie", 7.0));
+        var third = reviewWriteBehind.submit(new Review(null, 1L, "Good Movie", 8.0));
+
+        StepVerifier.create(Flux.mergeDelayError(3, first, duplicate, third))
+                .expectNextCount(2)
+                .expectErrorSatisfies(ex -> {
+                    assertTrue(ex instanceof ReviewConflictException);
+                    assertEquals("Review already exists for the given Review Id : abc", ex.getMessage());
+                })
+                .verify(Duration.ofSeconds(5));
+        verify(reviewReactiveRepository).insert(argThat((List<Review> reviews) -> reviews.size() == 1
+                && reviews.get(0).getComment().equals("Good Movie")));
+        assertEquals(1.0, meterRegistry.get(ReviewWriteBehind.FAILED).counter().count());
+    }
+
+    @Test
+    void stop_drainsTheQueue() throws Exception {
+        reviewWriteBehind = writeBehind(ReviewWriteBehind.Ack.ENQUEUE, 10, 100, Duration.ofHours(1));
+        reviewWriteBehind.submit(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+        reviewWriteBehind.submit(new Review(null, 2L, "Excellent Movie", 7.0)).block();
+
+        reviewWriteBehind.stop();
+
+        verify(reviewReactiveRepository).insert(argThat((List<Review> reviews) -> reviews.size() == 2));
+        assertEquals(0.0, meterRegistry.get(ReviewWriteBehind.QUEUE_DEPTH).gauge().value());
+        StepVerifier.create(reviewWriteBehind.submit(new Review(null, 1L, "Good Movie", 8.0)))
+                .expectError(ReviewQueueFullException.class)
+                .verify();
+    }
+
+    private ReviewWriteBehind writeBehind(ReviewWriteBehind.Ack ack, int queueCapacity, int batchSize,
+                                          Duration flushInterval) {
+        var writeBehind = new ReviewWriteBehind(reviewReactiveRepository, reviewStatsService, true, ack,
+                queueCapacity, batchSize, flushInterval, Duration.ZERO, Duration.ofSeconds(5), Duration.ofSeconds(5),
+                meterRegistry);
+        writeBehind.start();
+        return writeBehind;
+    }
+}
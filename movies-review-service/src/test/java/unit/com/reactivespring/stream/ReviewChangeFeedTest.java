@@ -0,0 +1,100 @@
+package com.reactivespring.stream;
+
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewChangeFeedTest {
+
+    SimpleMeterRegistry meterRegistry;
+    Sinks.Many<Review> changes;
+    AtomicInteger sourceSubscriptions;
+    ReviewChangeFeed reviewChangeFeed;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        changes = Sinks.many().multicast().directBestEffort();
+        sourceSubscriptions = new AtomicInteger();
+        // in-process stand-in for the Mongo change stream
+        ReviewChangeSource source = () -> changes.asFlux().doOnSubscribe(subscription -> sourceSubscriptions.incrementAndGet());
+        reviewChangeFeed = new ReviewChangeFeed(source, 2, Duration.ZERO, Duration.ofMillis(10), meterRegistry);
+    }
+
+    @Test
+    void reviews_filteredPerMovie() {
+        StepVerifier.create(reviewChangeFeed.reviews(1L))
+                .then(() -> {
+                    changes.tryEmitNext(new Review("abc", 1L, "Awesome Movie", 9.0));
+                    changes.tryEmitNext(new Review("def", 2L, "Excellent Movie", 8.0));
+                    changes.tryEmitNext(new Review("abc", 1L, "Awesome Movie, updated", 8.5));
+                })
+                .expectNextMatches(review -> review.getReviewId().equals("abc") && review.getRating() == 9.0)
+                .expectNextMatches(review -> review.getReviewId().equals("abc") && review.getRating() == 8.5)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void reviews_oneSourceSubscriptionForAllSubscribers() {
+        var first = Flux.from(reviewChangeFeed.reviews(1L)).take(1);
+        var second = Flux.from(reviewChangeFeed.reviews(1L)).take(1);
+        var third = Flux.from(reviewChangeFeed.reviews(2L)).take(1);
+
+        StepVerifier.create(Flux.merge(first, second, third))
+                .then(() -> {
+                    assertEquals(3.0, meterRegistry.get(ReviewChangeFeed.SUBSCRIBERS).gauge().value());
+                    changes.tryEmitNext(new Review("abc", 1L, "Awesome Movie", 9.0));
+                    changes.tryEmitNext(new Review("def", 2L, "Excellent Movie", 8.0));
+                })
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertEquals(1, sourceSubscriptions.get());
+        assertEquals(0.0, meterRegistry.get(ReviewChangeFeed.SUBSCRIBERS).gauge().value());
+    }
+
+    @Test
+    void reviews_sourceErrorReconnects() {
+        var failing = new AtomicInteger();
+        ReviewChangeSource source = () -> Flux.defer(() -> failing.getAndIncrement() == 0
+                ? Flux.error(new IllegalStateException("cursor killed"))
+                : changes.asFlux());
+        reviewChangeFeed = new ReviewChangeFeed(source, 2, Duration.ZERO, Duration.ofMillis(10), meterRegistry);
+
+        StepVerifier.create(reviewChangeFeed.reviews(1L))
+                .then(() -> {
+                    while (changes.currentSubscriberCount() == 0) {
+                        Thread.onSpinWait();
+                    }
+                    changes.tryEmitNext(new Review("abc", 1L, "Awesome Movie", 9.0));
+                })
+                .expectNextMatches(review -> review.getReviewId().equals("abc"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void reviews_slowSubscriberDropsOldest() {
+        StepVerifier.create(reviewChangeFeed.reviews(1L), 0)
+                .then(() -> {
+                    changes.tryEmitNext(new Review("abc", 1L, "first", 9.0));
+                    changes.tryEmitNext(new Review("def", 1L, "second", 8.0));
+                    changes.tryEmitNext(new Review("ghi", 1L, "third", 7.0));
+                })
+                .thenRequest(2)
+                .expectNextMatches(review -> review.getReviewId().equals("def"))
+                .expectNextMatches(review -> review.getReviewId().equals("ghi"))
+                .thenCancel()
+                .verify();
+    }
+}
@@ -0,0 +1,64 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Jackson encode / decode of the aggregated Movie - one MovieInfo and its reviews
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MovieSerializationBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"10"})
+    int reviewCount;
+
+    Movie movie;
+
+    ObjectWriter writer;
+    ObjectReader reader;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        var movieInfo = new MovieInfo("abc", "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var reviewList = LongStream.range(0, reviewCount)
+                .mapToObj(i -> new Review("review" + i, 1L, "Awesome Movie", 9.0))
+                .collect(Collectors.toList());
+        movie = new Movie(movieInfo, reviewList);
+
+        var builder = format.equals("smile") ? Jackson2ObjectMapperBuilder.smile()
+                : format.equals("cbor") ? Jackson2ObjectMapperBuilder.cbor()
+                : Jackson2ObjectMapperBuilder.json();
+        // as configured by spring boot
+        var objectMapper = builder.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        writer = objectMapper.writerFor(Movie.class);
+        reader = objectMapper.readerFor(Movie.class);
+        encoded = writer.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public Movie decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,185 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.CircuitBreakerOpenException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one downstream, use as .transform(circuitBreaker.mono()).
+ * CLOSED - calls go through, the outcomes of the last windowSize calls are kept. Once at least minimumCalls were
+ * made and failureRateThreshold of them failed with the downstream's failure exception, or slowCallRateThreshold of
+ * them took slowCallDuration or longer, it opens.
+ * OPEN - calls fail at once with a CircuitBreakerOpenException, for openDuration.
+ * HALF_OPEN - halfOpenCalls trial calls are let through, the others refused. The breaker closes with an empty
+ * window when the trial calls stay under both thresholds, otherwise it opens again.
+ * Nothing waits on a downstream while holding the lock, it only guards the window's counters
+ */
+public class CircuitBreaker {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+    private static final int NOT_PERMITTED = -1;
+
+    private final Class<? extends Throwable> failure;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoTime;
+    private final CircuitBreakerOpenException openException;
+    private final LongAdder notPermitted = new LongAdder();
+
+    // guarded by this, state and epoch are also read without the lock on the way into a call.
+    // epoch changes with every state change, outcomes of calls let through in an earlier one are dropped
+    private volatile State state = State.CLOSED;
+    private volatile int epoch;
+    private final byte[] window;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private int halfOpenPermits;
+
+    CircuitBreaker(String downstream, Class<? extends Throwable> failure, int windowSize, int minimumCalls,
+                   double failureRateThreshold, double slowCallRateThreshold, Duration slowCallDuration,
+                   Duration openDuration, int halfOpenCalls, LongSupplier nanoTime) {
+        this.failure = failure;
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoTime = nanoTime;
+        this.openException = new CircuitBreakerOpenException(downstream);
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono() {
+        return mono -> Mono.defer(() -> {
+            var permit = tryAcquire();
+            if (permit == NOT_PERMITTED) {
+                notPermitted.increment();
+                return Mono.error(openException);
+            }
+            var start = nanoTime.getAsLong();
+            return mono
+                    .doOnSuccess(value -> record(permit, start, false))
+                    .doOnError(error -> record(permit, start, failure.isInstance(error)))
+                    .doOnCancel(() -> cancelled(permit));
+        });
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getNotPermitted() {
+        return notPermitted.sum();
+    }
+
+    /**
+     * @return the epoch the call was let through in, or NOT_PERMITTED
+     */
+    private int tryAcquire() {
+        var current = epoch;
+        if (state == State.CLOSED) {
+            return current;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoTime.getAsLong() - openedAt < openNanos) {
+                    return NOT_PERMITTED;
+                }
+                reset(State.HALF_OPEN);
+                halfOpenPermits = halfOpenCalls;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return NOT_PERMITTED;
+                }
+                halfOpenPermits--;
+            }
+            return epoch;
+        }
+    }
+
+    private synchronized void record(int permit, long start, boolean failed) {
+        if (permit != epoch) {
+            return;
+        }
+        byte outcome = 0;
+        if (failed) {
+            outcome |= FAILED;
+        }
+        if (nanoTime.getAsLong() - start >= slowCallNanos) {
+            outcome |= SLOW;
+        }
+        if (state == State.HALF_OPEN) {
+            add(outcome);
+            if (calls == halfOpenCalls) {
+                if (tripped()) {
+                    open();
+                } else {
+                    reset(State.CLOSED);
+                }
+            }
+            return;
+        }
+        if (calls == window.length) {
+            remove(window[next]);
+        }
+        window[next] = outcome;
+        next = (next + 1) % window.length;
+        add(outcome);
+        if (calls >= minimumCalls && tripped()) {
+            open();
+        }
+    }
+
+    // a trial call that was cancelled tells nothing of the downstream, its permit is handed back
+    private synchronized void cancelled(int permit) {
+        if (permit == epoch && state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    private boolean tripped() {
+        return failures >= failureRateThreshold * calls || slowCalls >= slowCallRateThreshold * calls;
+    }
+
+    private void add(byte outcome) {
+        calls++;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+    }
+
+    private void remove(byte outcome) {
+        calls--;
+        failures -= outcome & FAILED;
+        slowCalls -= (outcome & SLOW) >> 1;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = nanoTime.getAsLong();
+    }
+
+    private void reset(State newState) {
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        state = newState;
+        epoch = (epoch + 1) & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,67 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Creates the CircuitBreaker of each downstream, all with the circuit-breaker.* settings.
+ * circuit.breaker.state is the breaker's state per downstream - 0 closed, 1 open, 2 half open -
+ * and circuit.breaker.not.permitted counts the calls it refused
+ */
+@Component
+public class CircuitBreakers {
+
+    static final String STATE = "circuit.breaker.state";
+    static final String NOT_PERMITTED = "circuit.breaker.not.permitted";
+
+    private final MeterRegistry meterRegistry;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final Duration slowCallDuration;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+
+    public CircuitBreakers(MeterRegistry meterRegistry,
+                           @Value("${circuit-breaker.window-size:50}") int windowSize,
+                           @Value("${circuit-breaker.minimum-calls:20}") int minimumCalls,
+                           @Value("${circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                           @Value("${circuit-breaker.slow-call-rate-threshold:0.5}") double slowCallRateThreshold,
+                           @Value("${circuit-breaker.slow-call-duration:1s}") Duration slowCallDuration,
+                           @Value("${circuit-breaker.open-duration:10s}") Duration openDuration,
+                           @Value("${circuit-breaker.half-open-calls:5}") int halfOpenCalls) {
+        if (minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1) {
+            throw new IllegalArgumentException(
+                    "circuit-breaker.minimum-calls must be between 1 and window-size, half-open-calls at least 1");
+        }
+        this.meterRegistry = meterRegistry;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * @param failure the exception the downstream fails with - other errors, a 4xx, count as a call that went through
+     */
+    public CircuitBreaker create(String downstream, Class<? extends Throwable> failure) {
+        var circuitBreaker = new CircuitBreaker(downstream, failure, windowSize, minimumCalls, failureRateThreshold,
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls, System::nanoTime);
+        Gauge.builder(STATE, circuitBreaker, breaker -> breaker.getState().ordinal())
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        FunctionCounter.builder(NOT_PERMITTED, circuitBreaker, CircuitBreaker::getNotPermitted)
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,80 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Retries of a downstream call, use as .transform(downstreamRetry.mono("moviesInfo", MoviesInfoServerException.class)).
+ * Only the given exception is retried, at most max-attempts times, each after a random delay between 0 and
+ * base-backoff * 2^retry (capped at max-backoff) - full jitter, so the callers of a downstream that has just
+ * restarted do not come back in step. Each retry also has to be allowed by the RetryBudget, otherwise the
+ * last error is passed on as it is.
+ * downstream.retries counts them per downstream, by outcome retried, budget_exhausted or attempts_exhausted
+ */
+@Component
+public class DownstreamRetry {
+
+    static final String RETRIES = "downstream.retries";
+
+    private final RetryBudget retryBudget;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    public DownstreamRetry(RetryBudget retryBudget, MeterRegistry meterRegistry,
+                           @Value("${retry.max-attempts:2}") int maxAttempts,
+                           @Value("${retry.base-backoff:50ms}") Duration baseBackoff,
+                           @Value("${retry.max-backoff:1s}") Duration maxBackoff) {
+        this.retryBudget = retryBudget;
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String downstream, Class<? extends Throwable> retryable) {
+        var retried = meterRegistry.counter(RETRIES, "downstream", downstream, "outcome", "retried");
+        var budgetExhausted = meterRegistry.counter(RETRIES, "downstream", downstream, "outcome", "budget_exhausted");
+        var attemptsExhausted = meterRegistry.counter(RETRIES, "downstream", downstream, "outcome", "attempts_exhausted");
+        var retry = Retry.from(signals -> signals.concatMap(signal -> {
+            var failure = signal.failure();
+            if (!retryable.isInstance(failure)) {
+                return Mono.error(failure);
+            }
+            if (signal.totalRetries() >= maxAttempts) {
+                return count(attemptsExhausted, failure);
+            }
+            if (!retryBudget.tryRetry()) {
+                return count(budgetExhausted, failure);
+            }
+            retried.increment();
+            return Mono.delay(Duration.ofNanos(backoff(signal.totalRetries())));
+        }));
+        return mono -> Mono.defer(() -> {
+            retryBudget.requested();
+            return mono.retryWhen(retry);
+        });
+    }
+
+    // a random delay up to base-backoff * 2^retry, the doubling stops at max-backoff
+    long backoff(long retry) {
+        var ceiling = retry < Long.numberOfLeadingZeros(baseBackoffNanos) - 1
+                ? Math.min(maxBackoffNanos, baseBackoffNanos << retry)
+                : maxBackoffNanos;
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static Mono<Long> count(Counter counter, Throwable failure) {
+        counter.increment();
+        return Mono.error(failure);
+    }
+}
@@ -0,0 +1,97 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * GET movies-info-service/v1/movieinfos/{id}. A 4xx is a MoviesInfoClientException with the same status,
+ * a 5xx or no answer within moviesInfoTimeout a MoviesInfoServerException, retried by DownstreamRetry.
+ * While its CircuitBreaker is open the call fails with a CircuitBreakerOpenException without being made
+ */
+@Component
+public class MoviesInfoRestClient {
+
+    private WebClient webClient;
+
+    private String moviesInfoUrl;
+
+    private Duration timeout;
+
+    private DownstreamRetry downstreamRetry;
+
+    private CircuitBreaker circuitBreaker;
+
+    public MoviesInfoRestClient(WebClient webClient, DownstreamRetry downstreamRetry, CircuitBreakers circuitBreakers,
+                                @Value("${restClient.moviesInfoUrl}") String moviesInfoUrl,
+                                @Value("${restClient.moviesInfoTimeout:2s}") Duration timeout) {
+        this.webClient = webClient;
+        this.moviesInfoUrl = moviesInfoUrl;
+        this.timeout = timeout;
+        this.downstreamRetry = downstreamRetry;
+        this.circuitBreaker = circuitBreakers.create("moviesInfo", MoviesInfoServerException.class);
+    }
+
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return webClient.get()
+                .uri(moviesInfoUrl.concat("/{id}"), movieId)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, response -> clientError(response, movieId))
+                .onStatus(HttpStatus::is5xxServerError, MoviesInfoRestClient::serverError)
+                .bodyToMono(MovieInfo.class)
+                // movies-info-service answers an unknown id with an empty 200
+                .switchIfEmpty(Mono.error(() -> notFound(movieId)))
+                .timeout(timeout, Mono.error(() -> new MoviesInfoServerException(
+                        "MoviesInfoService did not answer within " + timeout.toMillis() + "ms")))
+                .transform(downstreamRetry.mono("moviesInfo", MoviesInfoServerException.class))
+                .transform(circuitBreaker.mono());
+    }
+
+    /**
+     * GET movies-info-service/v1/movieinfos?ids= - one request for all the movie infos, unknown ids are left out.
+     * Collected like the reviews, so the timeout and the retries cover the whole answer
+     */
+    public Mono<List<MovieInfo>> retrieveMovieInfos(Collection<String> movieIds) {
+        return webClient.get()
+                .uri(moviesInfoUrl.concat("?ids={ids}"), String.join(",", movieIds))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, response -> clientError(response, null))
+                .onStatus(HttpStatus::is5xxServerError, MoviesInfoRestClient::serverError)
+                .bodyToFlux(MovieInfo.class)
+                .collectList()
+                .timeout(timeout, Mono.error(() -> new MoviesInfoServerException(
+                        "MoviesInfoService did not answer within " + timeout.toMillis() + "ms")))
+                .transform(downstreamRetry.mono("moviesInfo", MoviesInfoServerException.class))
+                .transform(circuitBreaker.mono());
+    }
+
+    private static Mono<MoviesInfoClientException> clientError(ClientResponse response, String movieId) {
+        if (response.statusCode() == HttpStatus.NOT_FOUND && movieId != null) {
+            return response.releaseBody().then(Mono.fromSupplier(() -> notFound(movieId)));
+        }
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty(response.statusCode().getReasonPhrase())
+                .map(message -> new MoviesInfoClientException(message, response.rawStatusCode()));
+    }
+
+    private static Mono<MoviesInfoServerException> serverError(ClientResponse response) {
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty(response.statusCode().getReasonPhrase())
+                .map(message -> new MoviesInfoServerException("Server Exception in MoviesInfoService " + message));
+    }
+
+    private static MoviesInfoClientException notFound(String movieId) {
+        return new MoviesInfoClientException("There is no MovieInfo Available for the passed in Id : " + movieId,
+                HttpStatus.NOT_FOUND.value());
+    }
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service-wide allowance of retries as a fraction of requests. Every downstream request deposits ratio of a retry,
+ * every retry withdraws a whole one - while a downstream is down the retries add at most ratio to its load.
+ * The balance is capped at max-balance, and starts there so a quiet service can still retry.
+ * Kept in thousandths of a retry, depositing and withdrawing is one compare-and-set, no lock
+ */
+@Component
+public class RetryBudget {
+
+    static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public RetryBudget(@Value("${retry.budget.ratio:0.1}") double ratio,
+                       @Value("${retry.budget.max-balance:20}") int maxBalance) {
+        if (ratio < 0 || maxBalance < 1) {
+            throw new IllegalArgumentException("retry.budget.ratio must be >= 0 and max-balance >= 1");
+        }
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = maxBalance * SCALE;
+        this.balance = new AtomicLong(this.maxBalance);
+    }
+
+    public void requested() {
+        balance.accumulateAndGet(deposit, (current, amount) -> Math.min(current + amount, maxBalance));
+    }
+
+    /**
+     * @return whether a retry was withdrawn from the budget
+     */
+    public boolean tryRetry() {
+        while (true) {
+            var current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
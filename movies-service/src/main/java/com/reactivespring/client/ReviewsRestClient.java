@@ -0,0 +1,136 @@
+package com.reactivespring.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * GET movies-review-service/v1/reviews?movieInfoId=. A 4xx is a ReviewsClientException, a 5xx or
+ * not having read all the reviews within reviewsTimeout a ReviewsServerException, retried by DownstreamRetry.
+ * While its CircuitBreaker is open the call fails with a CircuitBreakerOpenException without being made
+ */
+@Component
+public class ReviewsRestClient {
+
+    private WebClient webClient;
+
+    private String reviewsUrl;
+
+    private Duration timeout;
+
+    private DownstreamRetry downstreamRetry;
+
+    private CircuitBreaker circuitBreaker;
+
+    // the reviews last read of each movie, for the degraded Movie while the circuit breaker is open
+    private Cache<String, List<Review>> lastReviews;
+
+    public ReviewsRestClient(WebClient webClient, DownstreamRetry downstreamRetry, CircuitBreakers circuitBreakers,
+                             @Value("${restClient.reviewsUrl}") String reviewsUrl,
+                             @Value("${restClient.reviewsTimeout:2s}") Duration timeout,
+                             @Value("${restClient.lastReviews.maximum-size:10000}") long lastReviewsSize,
+                             @Value("${restClient.lastReviews.expire-after-write:10m}") Duration lastReviewsExpiry) {
+        this.webClient = webClient;
+        this.reviewsUrl = reviewsUrl;
+        this.timeout = timeout;
+        this.downstreamRetry = downstreamRetry;
+        this.circuitBreaker = circuitBreakers.create("reviews", ReviewsServerException.class);
+        this.lastReviews = Caffeine.newBuilder()
+                .maximumSize(lastReviewsSize)
+                .expireAfterWrite(lastReviewsExpiry)
+                .build();
+    }
+
+    /**
+     * Collected - the timeout covers the whole list, not the gap between two reviews.
+     * movieInfoId is a number in movies-review-service, a movie whose id is not has no reviews there
+     */
+    public Mono<List<Review>> retrieveReviews(String movieId) {
+        if (!isMovieInfoId(movieId)) {
+            return Mono.just(List.of());
+        }
+        return webClient.get()
+                .uri(reviewsUrl.concat("?movieInfoId={movieInfoId}"), movieId)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, ReviewsRestClient::clientError)
+                .onStatus(HttpStatus::is5xxServerError, ReviewsRestClient::serverError)
+                .bodyToFlux(Review.class)
+                .collectList()
+                .timeout(timeout, Mono.error(() -> new ReviewsServerException(
+                        "ReviewsService did not answer within " + timeout.toMillis() + "ms")))
+                .transform(downstreamRetry.mono("reviews", ReviewsServerException.class))
+                .doOnNext(reviews -> lastReviews.put(movieId, reviews))
+                .transform(circuitBreaker.mono());
+    }
+
+    /**
+     * GET movies-review-service/v1/reviews?movieInfoIds= - the reviews of all the movies in one request.
+     * movieInfoId is a number in movies-review-service, the movies whose id is not have no reviews there
+     */
+    public Mono<List<Review>> retrieveReviews(Collection<String> movieIds) {
+        var movieInfoIds = movieIds.stream()
+                .filter(ReviewsRestClient::isMovieInfoId)
+                .collect(Collectors.joining(","));
+        if (movieInfoIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return webClient.get()
+                .uri(reviewsUrl.concat("?movieInfoIds={movieInfoIds}"), movieInfoIds)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, ReviewsRestClient::clientError)
+                .onStatus(HttpStatus::is5xxServerError, ReviewsRestClient::serverError)
+                .bodyToFlux(Review.class)
+                .collectList()
+                .timeout(timeout, Mono.error(() -> new ReviewsServerException(
+                        "ReviewsService did not answer within " + timeout.toMillis() + "ms")))
+                .transform(downstreamRetry.mono("reviews", ReviewsServerException.class))
+                .doOnNext(reviews -> {
+                    var byMovie = reviews.stream()
+                            .collect(Collectors.groupingBy(review -> String.valueOf(review.getMovieInfoId())));
+                    movieIds.forEach(movieId -> lastReviews.put(movieId, byMovie.getOrDefault(movieId, List.of())));
+                })
+                .transform(circuitBreaker.mono());
+    }
+
+    private static boolean isMovieInfoId(String movieId) {
+        try {
+            Long.parseLong(movieId);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The reviews of the movie as last read within restClient.lastReviews.expire-after-write, otherwise none
+     */
+    public List<Review> lastReviews(String movieId) {
+        var reviews = lastReviews.getIfPresent(movieId);
+        return reviews != null ? reviews : List.of();
+    }
+
+    private static Mono<ReviewsClientException> clientError(ClientResponse response) {
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty(response.statusCode().getReasonPhrase())
+                .map(ReviewsClientException::new);
+    }
+
+    private static Mono<ReviewsServerException> serverError(ClientResponse response) {
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty(response.statusCode().getReasonPhrase())
+                .map(message -> new ReviewsServerException("Server Exception in ReviewsService " + message));
+    }
+}
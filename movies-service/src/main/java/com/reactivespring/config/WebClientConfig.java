@@ -0,0 +1,18 @@
+package com.reactivespring.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * One WebClient for both downstream services, built from spring boot's builder so the codecs and the
+ * binary Accept of CodecConfig apply
+ */
+@Configuration
+public class WebClientConfig {
+
+    @Bean
+    public WebClient webClient(WebClient.Builder builder) {
+        return builder.build();
+    }
+}
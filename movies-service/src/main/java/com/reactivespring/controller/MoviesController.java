@@ -0,0 +1,42 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.Movie;
+import com.reactivespring.metrics.EndpointMetrics;
+import com.reactivespring.service.MoviesService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/v1/movies")
+public class MoviesController {
+
+    private MoviesService moviesService;
+
+    private EndpointMetrics endpointMetrics;
+
+    public MoviesController(MoviesService moviesService, EndpointMetrics endpointMetrics) {
+        this.moviesService = moviesService;
+        this.endpointMetrics = endpointMetrics;
+    }
+
+    /**
+     * ids is a comma separated list of at most 100 movie ids. application/x-ndjson writes each movie on its own line
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Movie> retrieveMovies(@RequestParam("ids") List<String> movieIds) {
+        return moviesService.retrieveMovies(movieIds).transform(endpointMetrics.flux("retrieveMovies"));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId) {
+        return moviesService.retrieveMovieById(movieId).transform(endpointMetrics.mono("retrieveMovieById"));
+    }
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,11 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    // the reviews could not be read, reviewList is the last one read or empty - left out of the JSON when false
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean degraded;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, false);
+    }
 }
@@ -0,0 +1,18 @@
+package com.reactivespring.exception;
+
+/**
+ * A downstream call not made as its circuit breaker is open - answered 503 like the downstream being unavailable
+ */
+public class CircuitBreakerOpenException extends StacklessException {
+
+    private final String downstream;
+
+    public CircuitBreakerOpenException(String downstream) {
+        super("Circuit breaker of " + downstream + " is open", 503);
+        this.downstream = downstream;
+    }
+
+    public String getDownstream() {
+        return downstream;
+    }
+}
@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class MovieDataException extends StacklessException {
+
+    public MovieDataException(String message) {
+        super(message, HttpStatus.BAD_REQUEST.value());
+    }
+}
@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+/**
+ * The movie was not read within coalescing.max-wait - answered 504, the caller stops waiting on the shared lookup
+ */
+public class MovieLookupTimeoutException extends StacklessException {
+
+    public MovieLookupTimeoutException(String message) {
+        super(message, 504);
+    }
+}
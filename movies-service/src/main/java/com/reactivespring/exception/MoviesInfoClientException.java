@@ -1,11 +1,17 @@
 package com.reactivespring.exception;
 
-public class MoviesInfoClientException extends RuntimeException{
-    private String message;
-    private Integer statusCode;
+import org.springframework.http.HttpStatus;
+
+/**
+ * movies-info-service answered with a 4xx - passed on to the caller with the same status
+ */
+public class MoviesInfoClientException extends StacklessException {
+    // final - the status and the message are also the response, encoded once
+    private final String message;
+    private final Integer statusCode;
 
     public MoviesInfoClientException(String message, Integer statusCode) {
-        super(message);
+        super(message, statusCode != null ? statusCode : HttpStatus.BAD_REQUEST.value());
         this.message = message;
         this.statusCode = statusCode;
     }
@@ -15,17 +21,9 @@ public class MoviesInfoClientException extends RuntimeException{
         return message;
     }
 
-    public void setMessage(String message) {
-        this.message = message;
-    }
-
     public Integer getStatusCode() {
         return statusCode;
     }
 
-    public void setStatusCode(Integer statusCode) {
-        this.statusCode = statusCode;
-    }
-
 
 }
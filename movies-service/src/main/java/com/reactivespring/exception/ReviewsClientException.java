@@ -1,10 +1,15 @@
 package com.reactivespring.exception;
 
-public class ReviewsClientException extends RuntimeException{
+import org.springframework.http.HttpStatus;
+
+/**
+ * movies-review-service answered with a 4xx
+ */
+public class ReviewsClientException extends StacklessException {
     private String message;
 
     public ReviewsClientException(String message) {
-        super(message);
+        super(message, HttpStatus.BAD_REQUEST.value());
         this.message = message;
     }
 }
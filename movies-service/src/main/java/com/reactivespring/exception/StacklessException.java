@@ -0,0 +1,39 @@
+package com.reactivespring.exception;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base of the exceptions thrown on the routine error paths - bad input, unknown ids, load shedding. They are
+ * answered with their status and message and never logged, so no stack trace is filled in and no suppressed
+ * exceptions are kept: creating one costs little more than its message, and an instance can be shared
+ */
+public abstract class StacklessException extends RuntimeException {
+
+    private final int status;
+    private volatile byte[] body;
+
+    protected StacklessException(String message, int status) {
+        this(message, null, status);
+    }
+
+    protected StacklessException(String message, Throwable cause, int status) {
+        super(message, cause, false, false);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * The message as the UTF-8 response body, encoded on first use - a shared instance is encoded once
+     */
+    public byte[] getBody() {
+        var encoded = body;
+        if (encoded == null) {
+            encoded = String.valueOf(getMessage()).getBytes(StandardCharsets.UTF_8);
+            body = encoded;
+        }
+        return encoded;
+    }
+}
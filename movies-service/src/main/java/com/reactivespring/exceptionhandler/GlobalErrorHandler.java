@@ -0,0 +1,69 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.StacklessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * When an error occurs, run through this first - ahead of spring boot's default handler.
+ * A 4xx of movies-info-service or movies-review-service is a StacklessException, answered with its status and
+ * pre-encoded message and not logged. Only a genuine 5xx - MoviesInfoServerException, ReviewsServerException
+ * or anything unexpected - is logged, with its stack trace, and answered with the reason phrase alone
+ */
+@Component
+@Order(-2)
+@Slf4j // logs errors
+public class GlobalErrorHandler implements ErrorWebExceptionHandler {
+
+    // bodies of the errors without a message of their own (an unknown route is a 404 "Not Found"), encoded once
+    private static final Map<HttpStatus, byte[]> REASON_PHRASES = new EnumMap<>(HttpStatus.class);
+
+    static {
+        for (var status : HttpStatus.values()) {
+            REASON_PHRASES.put(status, status.getReasonPhrase().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        var response = exchange.getResponse();
+        if (response.isCommitted()) {
+            // a streamed body failed part way - status and headers are already out, leave it to the server
+            return Mono.error(ex);
+        }
+        byte[] body;
+        if (ex instanceof StacklessException) {
+            var expected = (StacklessException) ex;
+            response.setRawStatusCode(expected.getStatus());
+            body = expected.getBody();
+        } else if (ex instanceof ResponseStatusException) {
+            // unknown route, unreadable body, not acceptable ...
+            var statusException = (ResponseStatusException) ex;
+            response.setStatusCode(statusException.getStatus());
+            body = statusException.getReason() != null
+                    ? statusException.getReason().getBytes(StandardCharsets.UTF_8)
+                    : REASON_PHRASES.get(statusException.getStatus());
+        } else {
+            // driver and downstream messages stay in the log
+            response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+            body = REASON_PHRASES.get(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if (!(ex instanceof StacklessException) && response.getStatusCode() != null
+                && response.getStatusCode().is5xxServerError()) {
+            log.error("Exception message is {} ", ex.getMessage(), ex);
+        }
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
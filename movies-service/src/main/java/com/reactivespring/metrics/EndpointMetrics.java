@@ -0,0 +1,86 @@
+package com.reactivespring.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Per endpoint timer, element and error counts, in place of .log() on every request.
+ * Use as .transform(endpointMetrics.mono("retrieveMovieById"))
+ */
+@Component
+public class EndpointMetrics {
+
+    static final String REQUESTS = "endpoint.requests";
+    static final String ELEMENTS = "endpoint.elements";
+    static final String ERRORS = "endpoint.errors";
+
+    private final MeterRegistry meterRegistry;
+    private final double logSampleRate;
+    private final Map<String, Counter> elementCounters = new ConcurrentHashMap<>();
+
+    public EndpointMetrics(MeterRegistry meterRegistry,
+                           @Value("${endpoint.log.sample-rate:0}") double logSampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.logSampleRate = logSampleRate;
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> flux(String endpoint) {
+        return flux -> Flux.defer(() -> {
+            var sample = Timer.start(meterRegistry);
+            var elements = elements(endpoint);
+            var instrumented = flux
+                    .doOnNext(element -> elements.increment())
+                    .doOnError(error -> errors(endpoint, error))
+                    .doFinally(signalType -> sample.stop(requests(endpoint, signalType)));
+            return sampled() ? instrumented.log(logCategory(endpoint), Level.INFO) : instrumented;
+        });
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String endpoint) {
+        return mono -> Mono.defer(() -> {
+            var sample = Timer.start(meterRegistry);
+            var elements = elements(endpoint);
+            var instrumented = mono
+                    .doOnNext(element -> elements.increment())
+                    .doOnError(error -> errors(endpoint, error))
+                    .doFinally(signalType -> sample.stop(requests(endpoint, signalType)));
+            return sampled() ? instrumented.log(logCategory(endpoint), Level.INFO) : instrumented;
+        });
+    }
+
+    // endpoint.log.sample-rate of 0 never logs, 1 logs the signals of every request
+    private boolean sampled() {
+        return logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate;
+    }
+
+    private Counter elements(String endpoint) {
+        return elementCounters.computeIfAbsent(endpoint, key -> meterRegistry.counter(ELEMENTS, "endpoint", key));
+    }
+
+    private Timer requests(String endpoint, SignalType signalType) {
+        var outcome = signalType == SignalType.ON_ERROR ? "error"
+                : signalType == SignalType.CANCEL ? "cancel"
+                : "success";
+        return meterRegistry.timer(REQUESTS, "endpoint", endpoint, "outcome", outcome);
+    }
+
+    private void errors(String endpoint, Throwable error) {
+        meterRegistry.counter(ERRORS, "endpoint", endpoint, "exception", error.getClass().getSimpleName()).increment();
+    }
+
+    private static String logCategory(String endpoint) {
+        return "com.reactivespring.endpoint." + endpoint;
+    }
+}
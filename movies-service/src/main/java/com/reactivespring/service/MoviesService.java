@@ -0,0 +1,94 @@
+package com.reactivespring.service;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.CircuitBreakerOpenException;
+import com.reactivespring.exception.MovieDataException;
+import com.reactivespring.exception.MovieLookupTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class MoviesService {
+
+    static final int MAX_IDS = 100;
+
+    private MoviesInfoRestClient moviesInfoRestClient;
+
+    private ReviewsRestClient reviewsRestClient;
+
+    private RequestCoalescer<String, Movie> movieLookups;
+
+    public MoviesService(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient,
+                         MeterRegistry meterRegistry,
+                         @Value("${coalescing.max-wait:10s}") Duration maxWait) {
+        this.moviesInfoRestClient = moviesInfoRestClient;
+        this.reviewsRestClient = reviewsRestClient;
+        this.movieLookups = new RequestCoalescer<>("movies", maxWait, movieId -> new MovieLookupTimeoutException(
+                "Movie " + movieId + " was not read within " + maxWait.toMillis() + "ms"), meterRegistry);
+    }
+
+    /**
+     * Concurrent requests of the same movie share one lookup, a trending movie is read once per round trip
+     */
+    public Mono<Movie> retrieveMovieById(String movieId) {
+        return movieLookups.coalesce(movieId, this::lookupMovie);
+    }
+
+    /**
+     * The movies of the given ids, in that order, unknown ids left out. Two downstream requests whatever the number
+     * of movies - one for all the movie infos and one for all the reviews, made at once and joined here
+     */
+    public Flux<Movie> retrieveMovies(List<String> movieIds) {
+        var distinct = new LinkedHashSet<>(movieIds);
+        if (distinct.isEmpty() || distinct.size() > MAX_IDS) {
+            return Flux.error(new MovieDataException("ids must name between 1 and " + MAX_IDS + " movies : "
+                    + distinct.size()));
+        }
+        var reviews = reviewsRestClient.retrieveReviews(distinct)
+                .map(reviewList -> Optional.of(reviewList.stream()
+                        .collect(Collectors.groupingBy(review -> String.valueOf(review.getMovieInfoId())))))
+                .onErrorResume(CircuitBreakerOpenException.class, open -> Mono.just(Optional.empty()));
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfos(distinct), reviews)
+                .flatMapIterable(movieInfosAndReviews -> {
+                    var movieInfos = movieInfosAndReviews.getT1().stream()
+                            .collect(Collectors.toMap(MovieInfo::getMovieInfoId, Function.identity()));
+                    var reviewsByMovie = movieInfosAndReviews.getT2();
+                    return distinct.stream()
+                            .filter(movieInfos::containsKey)
+                            .map(movieId -> reviewsByMovie
+                                    .map(byMovie -> new Movie(movieInfos.get(movieId),
+                                            byMovie.getOrDefault(movieId, List.of())))
+                                    .orElseGet(() -> new Movie(movieInfos.get(movieId),
+                                            reviewsRestClient.lastReviews(movieId), true)))
+                            .collect(Collectors.toList());
+                });
+    }
+
+    /**
+     * The movie info and the reviews are requested at once - the movie takes as long as the slower of the two
+     * calls, and a failure of either cancels the other.
+     * While the reviews' circuit breaker is open the movie is degraded, with the reviews last read
+     */
+    private Mono<Movie> lookupMovie(String movieId) {
+        var reviews = reviewsRestClient.retrieveReviews(movieId)
+                .map(Optional::of)
+                .onErrorResume(CircuitBreakerOpenException.class, open -> Mono.just(Optional.empty()));
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfo(movieId), reviews,
+                (movieInfo, reviewList) -> reviewList
+                        .map(list -> new Movie(movieInfo, list))
+                        .orElseGet(() -> new Movie(movieInfo, reviewsRestClient.lastReviews(movieId), true)));
+    }
+}
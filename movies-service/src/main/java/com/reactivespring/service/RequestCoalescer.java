@@ -0,0 +1,124 @@
+package com.reactivespring.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Concurrent lookups of the same key share one in-flight lookup and its result or error. The first caller starts
+ * it, the others join until it completes - the next caller after that starts a new one, nothing is cached.
+ * A caller that cancels only leaves, the lookup is cancelled once all its callers have. Each caller waits at most
+ * maxWait, then fails with the timeout error of the key.
+ * coalescing.requests counts the lookups per name by role - leader started one, follower joined one - and
+ * coalescing.ratio is the share of followers, the fraction of downstream lookups saved
+ */
+public class RequestCoalescer<K, V> {
+
+    static final String REQUESTS = "coalescing.requests";
+    static final String IN_FLIGHT = "coalescing.in.flight";
+    static final String RATIO = "coalescing.ratio";
+
+    private final Map<K, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+    private final Function<K, ? extends Throwable> timeoutError;
+    private final Counter leaders;
+    private final Counter followers;
+
+    public RequestCoalescer(String name, Duration maxWait, Function<K, ? extends Throwable> timeoutError,
+                            MeterRegistry meterRegistry) {
+        this.maxWait = maxWait;
+        this.timeoutError = timeoutError;
+        this.leaders = meterRegistry.counter(REQUESTS, "name", name, "role", "leader");
+        this.followers = meterRegistry.counter(REQUESTS, "name", name, "role", "follower");
+        Gauge.builder(IN_FLIGHT, inFlight, Map::size)
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder(RATIO, this, RequestCoalescer::ratio)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> coalesce(K key, Function<K, Mono<V>> lookup) {
+        return Mono.defer(() -> {
+            while (true) {
+                var flight = inFlight.get(key);
+                if (flight == null) {
+                    var started = new Flight(key);
+                    if (inFlight.putIfAbsent(key, started) == null) {
+                        leaders.increment();
+                        started.start(lookup.apply(key));
+                        return started.result(maxWait);
+                    }
+                } else if (flight.tryJoin()) {
+                    followers.increment();
+                    return flight.result(maxWait);
+                } else {
+                    // its last caller left as this one came, it is being cancelled
+                    inFlight.remove(key, flight);
+                }
+            }
+        });
+    }
+
+    double ratio() {
+        var total = leaders.count() + followers.count();
+        return total == 0 ? 0 : followers.count() / total;
+    }
+
+    /**
+     * One lookup and the number of its callers. It is removed when it completes or fails, and cancelled
+     * and removed when its last caller has left - a caller can only join while there is at least one
+     */
+    private final class Flight {
+
+        private final K key;
+        private final Sinks.One<V> result = Sinks.one();
+        private final AtomicInteger callers = new AtomicInteger(1);
+        private volatile Disposable upstream;
+
+        Flight(K key) {
+            this.key = key;
+        }
+
+        void start(Mono<V> lookup) {
+            upstream = lookup
+                    .doFinally(signalType -> inFlight.remove(key, this))
+                    .subscribe(result::tryEmitValue, result::tryEmitError, result::tryEmitEmpty);
+        }
+
+        boolean tryJoin() {
+            while (true) {
+                var current = callers.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (callers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        Mono<V> result(Duration maxWait) {
+            // a caller timing out leaves too
+            return result.asMono()
+                    .doOnCancel(this::leave)
+                    .timeout(maxWait, Mono.error(() -> timeoutError.apply(key)));
+        }
+
+        private void leave() {
+            if (callers.decrementAndGet() == 0) {
+                inFlight.remove(key, this);
+                upstream.dispose();
+            }
+        }
+    }
+}
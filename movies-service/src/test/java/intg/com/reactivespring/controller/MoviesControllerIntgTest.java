@@ -1,4 +1,249 @@
 package com.reactivespring.controller;
 
-public class MoviesControllerIntgTest {
+import com.reactivespring.domain.Movie;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * movies-info-service and movies-review-service stubbed by one in-process server - movie 1 exists and has two
+ * reviews, both answered after DOWNSTREAM_DELAY. Movie 3 has no reviews, as the reviews service fails for it,
+ * movie 4 is never answered and movie 5 only on the second try. Movie 6 counts its requests.
+ * Movie GENERATED_ID has an id generated by Mongo, which the reviews service turns away with a 400.
+ * The multi-id lookups know movies 1 and 7 and count their requests
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+class MoviesControllerIntgTest {
+
+    static final Duration DOWNSTREAM_DELAY = Duration.ofMillis(400);
+    static final String GENERATED_ID = "61a4f2c8e7b1d94a3c8e5f10";
+
+    static final String MOVIE_INFO = "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005," +
+            "\"cast\":[\"Christian Bale\",\"Michael Cane\"],\"release_date\":\"2005-06-15\"}";
+    static final String REVIEWS = "[{\"reviewId\":\"abc\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}," +
+            "{\"reviewId\":\"def\",\"movieInfoId\":1,\"comment\":\"Excellent Movie\",\"rating\":8.0}]";
+
+    static AtomicInteger movie5Attempts = new AtomicInteger();
+    static AtomicInteger movie6Requests = new AtomicInteger();
+    static AtomicInteger multiIdRequests = new AtomicInteger();
+
+    static DisposableServer downstream = HttpServer.create()
+            .port(0)
+            .route(routes -> routes
+                    .get("/v1/movieinfos", (request, response) -> {
+                        multiIdRequests.incrementAndGet();
+                        return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.just("[" + MOVIE_INFO + "," + MOVIE_INFO.replace("\"1\"", "\"7\"")
+                                        .replace("Batman Begins", "The Prestige") + "]"));
+                    })
+                    .get("/v1/movieinfos/{id}", (request, response) -> {
+                        if ("6".equals(request.param("id"))) {
+                            movie6Requests.incrementAndGet();
+                        }
+                        switch (request.param("id")) {
+                            case "6":
+                            case "1":
+                            case "3":
+                            case GENERATED_ID:
+                                return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                        .sendString(Mono.just(MOVIE_INFO).delayElement(DOWNSTREAM_DELAY));
+                            case "4":
+                                return response.sendString(Mono.never());
+                            case "5":
+                                if (movie5Attempts.incrementAndGet() == 1) {
+                                    return response.status(503).sendString(Mono.just("Restarting"));
+                                }
+                                return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                        .sendString(Mono.just(MOVIE_INFO));
+                            default:
+                                // unknown id - an empty 200, as movies-info-service answers it
+                                return response.send();
+                        }
+                    })
+                    .get("/v1/reviews", (request, response) -> {
+                        if (request.uri().contains("movieInfoIds=")) {
+                            multiIdRequests.incrementAndGet();
+                            return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                    .sendString(Mono.just(REVIEWS.replace("]", ",{\"reviewId\":\"ghi\",\"movieInfoId\":7," +
+                                            "\"comment\":\"Great Movie\",\"rating\":9.5}]")));
+                        }
+                        if (request.uri().endsWith("movieInfoId=6")) {
+                            movie6Requests.incrementAndGet();
+                        }
+                        if (request.uri().endsWith("movieInfoId=" + GENERATED_ID)) {
+                            return response.status(400).sendString(Mono.just("movieInfoId must be a number : " + GENERATED_ID));
+                        }
+                        if (request.uri().endsWith("movieInfoId=3")) {
+                            return response.status(500).sendString(Mono.just("Mongo is down"));
+                        }
+                        return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.just(REVIEWS).delayElement(DOWNSTREAM_DELAY));
+                    }))
+            .bindNow();
+
+    @DynamicPropertySource
+    static void downstreamUrls(DynamicPropertyRegistry registry) {
+        registry.add("restClient.moviesInfoUrl", () -> "http://localhost:" + downstream.port() + "/v1/movieinfos");
+        registry.add("restClient.reviewsUrl", () -> "http://localhost:" + downstream.port() + "/v1/reviews");
+        registry.add("restClient.moviesInfoTimeout", () -> "1s");
+    }
+
+    @AfterAll
+    static void stopDownstream() {
+        downstream.disposeNow();
+    }
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void retrieveMovieById() {
+        var start = System.nanoTime();
+        var movie = webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .returnResult()
+                .getResponseBody();
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assert movie != null;
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(2, movie.getReviewList().size());
+        // the slower of the two calls, not their sum
+        assertTrue(elapsed.compareTo(DOWNSTREAM_DELAY.multipliedBy(2)) < 0, elapsed.toString());
+    }
+
+    @Test
+    void retrieveMovieById_generatedId_noReviews() {
+        var movie = webTestClient
+                .get()
+                .uri("/v1/movies/{id}", GENERATED_ID)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .returnResult()
+                .getResponseBody();
+
+        assert movie != null;
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertTrue(movie.getReviewList().isEmpty());
+    }
+
+    @Test
+    void retrieveMovieById_notFound() {
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "2")
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("There is no MovieInfo Available for the passed in Id : 2");
+    }
+
+    @Test
+    void retrieveMovieById_reviewsServerError() {
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "3")
+                .exchange()
+                .expectStatus()
+                .is5xxServerError()
+                .expectBody(String.class)
+                .isEqualTo("Internal Server Error");
+    }
+
+    @Test
+    void retrieveMovieById_movieInfoTimeout() {
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "4")
+                .exchange()
+                .expectStatus()
+                .is5xxServerError()
+                .expectBody(String.class)
+                .isEqualTo("Internal Server Error");
+    }
+
+    @Test
+    void retrieveMovieById_movieInfoRetried() {
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "5")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .value(movie -> assertEquals("Batman Begins", movie.getMovieInfo().getName()));
+
+        assertEquals(2, movie5Attempts.get());
+    }
+
+    @Test
+    void retrieveMovieById_concurrentRequestsCoalesced() {
+        // WebTestClient.exchange() blocks, these have to be in flight at once
+        var webClient = WebClient.create("http://localhost:" + port);
+        var movies = Flux.range(0, 50)
+                .flatMap(i -> webClient.get()
+                        .uri("/v1/movies/{id}", "6")
+                        .retrieve()
+                        .bodyToMono(Movie.class), 50)
+                .collectList()
+                .block();
+
+        assertEquals(50, movies.size());
+        // one movie info and one reviews request per lookup - the 50 requests arrive while the first is in flight,
+        // on a slow machine a few may come after it
+        assertTrue(movie6Requests.get() <= 4, movie6Requests.get() + " downstream requests");
+    }
+
+    @Test
+    void retrieveMovies() {
+        var movies = webTestClient
+                .get()
+                .uri("/v1/movies?ids={ids}", "7,1,8")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Movie.class)
+                .returnResult()
+                .getResponseBody();
+
+        assert movies != null;
+        assertEquals(2, movies.size());
+        assertEquals("The Prestige", movies.get(0).getMovieInfo().getName());
+        assertEquals(1, movies.get(0).getReviewList().size());
+        assertEquals("Batman Begins", movies.get(1).getMovieInfo().getName());
+        assertEquals(2, movies.get(1).getReviewList().size());
+        assertEquals(2, multiIdRequests.get());
+    }
 }
@@ -0,0 +1,143 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.CircuitBreakerOpenException;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CircuitBreakerTest {
+
+    AtomicLong nanoTime = new AtomicLong();
+
+    // opens when half of the last 10 calls failed or were slow, after at least 4
+    CircuitBreaker circuitBreaker = new CircuitBreaker("reviews", ReviewsServerException.class, 10, 4,
+            0.5, 0.5, Duration.ofSeconds(1), Duration.ofSeconds(10), 2, nanoTime::get);
+
+    Mono<String> success = Mono.just("reviews");
+    Mono<String> failure = Mono.error(new ReviewsServerException("Server Exception in ReviewsService"));
+
+    @Test
+    void opensOnFailureRate_thenRefusesCalls() {
+        call(success);
+        call(failure);
+        call(success);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        call(failure);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        var made = new AtomicInteger();
+        StepVerifier.create(Mono.fromCallable(made::incrementAndGet).transform(circuitBreaker.mono()))
+                .expectError(CircuitBreakerOpenException.class)
+                .verify();
+        assertEquals(0, made.get());
+        assertEquals(1, circuitBreaker.getNotPermitted());
+    }
+
+    @Test
+    void clientErrorsCountAsSuccess() {
+        var clientError = Mono.<String>error(new ReviewsClientException("Bad Request"));
+        for (var i = 0; i < 10; i++) {
+            call(clientError);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        var slow = Mono.fromCallable(() -> nanoTime.addAndGet(Duration.ofSeconds(1).toNanos()));
+        call(slow);
+        call(success);
+        call(slow);
+        call(success);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void slidingWindow_oldOutcomesDropped() {
+        for (var i = 0; i < 20; i++) {
+            call(success);
+        }
+        call(failure);
+        call(failure);
+        call(failure);
+        call(failure);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        // 5 of the last 10 - the 15 successes before them no longer count
+        call(failure);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void halfOpen_closesAfterSuccessfulTrialCalls() {
+        open();
+        nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        call(success);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        call(success);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        // an empty window again, the next failures do not open it right away
+        call(failure);
+        call(failure);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void halfOpen_limitsTrialCalls_reopensOnFailure() {
+        open();
+        nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        var pending = Mono.<String>never().transform(circuitBreaker.mono()).subscribe();
+        call(failure);
+        StepVerifier.create(success.transform(circuitBreaker.mono()))
+                .expectError(CircuitBreakerOpenException.class)
+                .verify();
+
+        // the pending trial call cancelled hands its permit back, for a failing one
+        pending.dispose();
+        call(failure);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void callStartedBeforeOpening_notCounted() {
+        var started = circuitBreaker.<String>mono();
+        var slowFailure = Mono.defer(() -> {
+            open();
+            nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+            return failure;
+        });
+        StepVerifier.create(slowFailure.transform(started))
+                .expectError(ReviewsServerException.class)
+                .verify();
+
+        // now half open, the failure of the call let through while closed was not a trial call
+        call(success);
+        call(success);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    private void open() {
+        for (var i = 0; i < 4; i++) {
+            call(failure);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    private void call(Mono<?> call) {
+        call.transform(circuitBreaker.mono()).onErrorResume(error -> Mono.empty()).block();
+    }
+}
@@ -0,0 +1,110 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownstreamRetryTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    DownstreamRetry downstreamRetry(RetryBudget retryBudget) {
+        return new DownstreamRetry(retryBudget, meterRegistry, 2, Duration.ofMillis(100), Duration.ofMillis(150));
+    }
+
+    @Test
+    void serverExceptionRetried() {
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                : Mono.just("movieInfo"));
+
+        StepVerifier.withVirtualTime(() -> call.transform(downstreamRetry(new RetryBudget(0.1, 20))
+                        .mono("moviesInfo", MoviesInfoServerException.class)))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("movieInfo")
+                .verifyComplete();
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, retries("retried"));
+    }
+
+    @Test
+    void attemptsExhausted_lastErrorPassedOn() {
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> Mono.<String>error(
+                new MoviesInfoServerException("Server Exception in MoviesInfoService " + attempts.incrementAndGet())));
+
+        StepVerifier.withVirtualTime(() -> call.transform(downstreamRetry(new RetryBudget(0.1, 20))
+                        .mono("moviesInfo", MoviesInfoServerException.class)))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof MoviesInfoServerException);
+                    assertEquals("Server Exception in MoviesInfoService 3", error.getMessage());
+                })
+                .verify();
+
+        assertEquals(1, retries("attempts_exhausted"));
+    }
+
+    @Test
+    void clientExceptionNotRetried() {
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new MoviesInfoClientException("There is no MovieInfo Available for the passed in Id : 1", 404));
+        });
+
+        StepVerifier.create(call.transform(downstreamRetry(new RetryBudget(0.1, 20))
+                        .mono("moviesInfo", MoviesInfoServerException.class)))
+                .expectError(MoviesInfoClientException.class)
+                .verify();
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void budgetExhausted_noRetry() {
+        var retryBudget = new RetryBudget(0, 1);
+        var retry = downstreamRetry(retryBudget).<String>mono("moviesInfo", MoviesInfoServerException.class);
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.<String>error(new MoviesInfoServerException("Server Exception in MoviesInfoService"));
+        });
+
+        StepVerifier.withVirtualTime(() -> call.transform(retry))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+
+        // the one retry of the budget, then none
+        assertEquals(2, attempts.get());
+        assertEquals(1, retries("retried"));
+        assertEquals(1, retries("budget_exhausted"));
+    }
+
+    @Test
+    void backoff_fullJitterCapped() {
+        var downstreamRetry = downstreamRetry(new RetryBudget(0.1, 20));
+
+        for (var i = 0; i < 1000; i++) {
+            assertTrue(downstreamRetry.backoff(0) <= Duration.ofMillis(100).toNanos());
+            assertTrue(downstreamRetry.backoff(1) <= Duration.ofMillis(150).toNanos());
+            assertTrue(downstreamRetry.backoff(100) <= Duration.ofMillis(150).toNanos());
+        }
+    }
+
+    private double retries(String outcome) {
+        return meterRegistry.counter(DownstreamRetry.RETRIES, "downstream", "moviesInfo", "outcome", outcome).count();
+    }
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void startsFull_thenRetriesAFractionOfRequests() {
+        var retryBudget = new RetryBudget(0.1, 2);
+
+        assertTrue(retryBudget.tryRetry());
+        assertTrue(retryBudget.tryRetry());
+        assertFalse(retryBudget.tryRetry());
+
+        var retries = 0;
+        for (var i = 0; i < 100; i++) {
+            retryBudget.requested();
+            if (retryBudget.tryRetry()) {
+                retries++;
+            }
+        }
+        assertEquals(10, retries);
+    }
+
+    @Test
+    void balanceCapped() {
+        var retryBudget = new RetryBudget(0.5, 3);
+
+        for (var i = 0; i < 1000; i++) {
+            retryBudget.requested();
+        }
+
+        var retries = 0;
+        while (retryBudget.tryRetry()) {
+            retries++;
+        }
+        assertEquals(3, retries);
+    }
+}
@@ -1,4 +1,199 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.config.CodecConfig;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.CircuitBreakerOpenException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.metrics.EndpointMetrics;
+import com.reactivespring.service.MoviesService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MoviesController.class)
+@AutoConfigureWebTestClient
+@Import({MoviesService.class, GlobalErrorHandler.class, CodecConfig.class, EndpointMetrics.class, SimpleMeterRegistry.class})
 public class MoviesControllerUnitTest {
+
+    static String MOVIES_URL = "/v1/movies";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @MockBean
+    ReviewsRestClient reviewsRestClient;
+
+    MovieInfo movieInfo = new MovieInfo("1", "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    List<Review> reviews = List.of(new Review("abc", 1L, "Awesome Movie", 9.0),
+            new Review("def", 1L, "Excellent Movie", 8.0));
+
+    @Test
+    void retrieveMovieById() {
+        when(moviesInfoRestClient.retrieveMovieInfo("1")).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClient.retrieveReviews("1")).thenReturn(Mono.just(reviews));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.degraded").doesNotExist()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.reviewList.length()").isEqualTo(2);
+    }
+
+    @Test
+    void retrieveMovieById_callsMadeConcurrently() {
+        when(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .thenReturn(Mono.delay(Duration.ofMillis(500)).thenReturn(movieInfo));
+        when(reviewsRestClient.retrieveReviews("1"))
+                .thenReturn(Mono.delay(Duration.ofMillis(500)).thenReturn(reviews));
+
+        var start = System.nanoTime();
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isOk();
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertTrue(elapsed.compareTo(Duration.ofMillis(900)) < 0, elapsed.toString());
+    }
+
+    @Test
+    void retrieveMovieById_movieInfoNotFound_reviewsCancelled() {
+        var reviewsCancelled = new AtomicBoolean();
+        when(moviesInfoRestClient.retrieveMovieInfo("1")).thenReturn(Mono.error(
+                new MoviesInfoClientException("There is no MovieInfo Available for the passed in Id : 1", 404)));
+        when(reviewsRestClient.retrieveReviews("1")).thenReturn(Mono.delay(Duration.ofSeconds(5))
+                .thenReturn(reviews)
+                .doOnCancel(() -> reviewsCancelled.set(true)));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("There is no MovieInfo Available for the passed in Id : 1");
+
+        assertTrue(reviewsCancelled.get());
+    }
+
+    @Test
+    void retrieveMovieById_reviewsServerError() {
+        when(moviesInfoRestClient.retrieveMovieInfo("1")).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClient.retrieveReviews("1")).thenReturn(Mono.error(
+                new ReviewsServerException("Server Exception in ReviewsService Internal Server Error")));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .is5xxServerError()
+                .expectBody(String.class)
+                .isEqualTo("Internal Server Error");
+    }
+
+    @Test
+    void retrieveMovieById_reviewsCircuitBreakerOpen_degraded() {
+        when(moviesInfoRestClient.retrieveMovieInfo("1")).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClient.retrieveReviews("1")).thenReturn(Mono.error(new CircuitBreakerOpenException("reviews")));
+        when(reviewsRestClient.lastReviews("1")).thenReturn(reviews);
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.degraded").isEqualTo(true)
+                .jsonPath("$.reviewList.length()").isEqualTo(2);
+    }
+
+    @Test
+    void retrieveMovieById_movieInfoCircuitBreakerOpen() {
+        when(moviesInfoRestClient.retrieveMovieInfo("1")).thenReturn(Mono.error(new CircuitBreakerOpenException("moviesInfo")));
+        when(reviewsRestClient.retrieveReviews("1")).thenReturn(Mono.just(reviews));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(503)
+                .expectBody(String.class)
+                .isEqualTo("Circuit breaker of moviesInfo is open");
+    }
+
+    @Test
+    void retrieveMovies() {
+        var otherMovieInfo = new MovieInfo("2", "The Dark Knight",
+                2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
+        var otherReview = new Review("ghi", 2L, "Great Movie", 9.5);
+        when(moviesInfoRestClient.retrieveMovieInfos(Set.of("2", "1", "3")))
+                .thenReturn(Mono.just(List.of(movieInfo, otherMovieInfo)));
+        when(reviewsRestClient.retrieveReviews(Set.of("2", "1", "3")))
+                .thenReturn(Mono.just(List.of(reviews.get(0), otherReview, reviews.get(1))));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", "2,1,3,1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Movie.class)
+                // in the order asked for, 3 is unknown
+                .isEqualTo(List.of(new Movie(otherMovieInfo, List.of(otherReview)), new Movie(movieInfo, reviews)));
+    }
+
+    @Test
+    void retrieveMovies_tooMany() {
+        var ids = IntStream.range(0, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", ids)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("ids must name between 1 and 100 movies : 101");
+    }
 }
@@ -0,0 +1,59 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GlobalErrorHandlerTest {
+
+    GlobalErrorHandler globalErrorHandler = new GlobalErrorHandler();
+
+    @Test
+    void clientError_statusOfTheDownstream() {
+        var exchange = handle(new MoviesInfoClientException("There is no MovieInfo Available for the passed in Id : abc", 404));
+
+        assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+        assertEquals("There is no MovieInfo Available for the passed in Id : abc",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void serverError_detailNotSent() {
+        var exchange = handle(new MoviesInfoServerException("Server Exception in MoviesInfoService Mongo is down"));
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exchange.getResponse().getStatusCode());
+        assertEquals("Internal Server Error", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void committedResponse_errorPassedOn() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies?ids=1,2"));
+        exchange.getResponse().setComplete().block();
+        var error = new IllegalStateException("connection reset");
+
+        StepVerifier.create(globalErrorHandler.handle(exchange, error))
+                .expectErrorMatches(ex -> ex == error)
+                .verify();
+    }
+
+    @Test
+    void responseStatus_reasonPhrase() {
+        var exchange = handle(new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+        assertEquals("Not Found", exchange.getResponse().getBodyAsString().block());
+    }
+
+    private MockServerWebExchange handle(Throwable ex) {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/abc"));
+        globalErrorHandler.handle(exchange, ex).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,124 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.MovieLookupTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    RequestCoalescer<String, String> coalescer = new RequestCoalescer<>("movies", Duration.ofSeconds(1),
+            key -> new MovieLookupTimeoutException("Movie " + key + " was not read within 1000ms"), meterRegistry);
+
+    AtomicInteger lookups = new AtomicInteger();
+    AtomicBoolean cancelled = new AtomicBoolean();
+    Sinks.One<String> result = Sinks.one();
+
+    Mono<String> lookup(String key) {
+        return Mono.defer(() -> {
+                    lookups.incrementAndGet();
+                    return result.asMono();
+                })
+                .doOnCancel(() -> cancelled.set(true));
+    }
+
+    @Test
+    void concurrentCallersShareOneLookup() {
+        var first = coalescer.coalesce("1", this::lookup).toFuture();
+        var second = coalescer.coalesce("1", this::lookup).toFuture();
+        var third = coalescer.coalesce("1", this::lookup).toFuture();
+
+        result.tryEmitValue("movie 1");
+
+        assertEquals("movie 1", first.join());
+        assertEquals("movie 1", second.join());
+        assertEquals("movie 1", third.join());
+        assertEquals(1, lookups.get());
+        assertEquals(2.0 / 3, meterRegistry.get(RequestCoalescer.RATIO).gauge().value(), 0.001);
+    }
+
+    @Test
+    void errorShared() {
+        var first = coalescer.coalesce("1", this::lookup);
+        var second = coalescer.coalesce("1", this::lookup);
+        var firstVerifier = StepVerifier.create(first).expectError(IllegalStateException.class).verifyLater();
+        var secondVerifier = StepVerifier.create(second).expectError(IllegalStateException.class).verifyLater();
+
+        result.tryEmitError(new IllegalStateException("down"));
+
+        firstVerifier.verify();
+        secondVerifier.verify();
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void differentKeysNotCoalesced() {
+        coalescer.coalesce("1", this::lookup).subscribe();
+        coalescer.coalesce("2", this::lookup).subscribe();
+
+        assertEquals(2, lookups.get());
+        assertEquals(2.0, meterRegistry.get(RequestCoalescer.IN_FLIGHT).gauge().value());
+    }
+
+    @Test
+    void completedLookupNotReused() {
+        StepVerifier.create(coalescer.coalesce("1", key -> Mono.fromCallable(() -> "movie " + lookups.incrementAndGet())))
+                .expectNext("movie 1")
+                .verifyComplete();
+        StepVerifier.create(coalescer.coalesce("1", key -> Mono.fromCallable(() -> "movie " + lookups.incrementAndGet())))
+                .expectNext("movie 2")
+                .verifyComplete();
+
+        assertEquals(0.0, meterRegistry.get(RequestCoalescer.IN_FLIGHT).gauge().value());
+    }
+
+    @Test
+    void oneCallerCancels_othersStillServed() {
+        var leaving = coalescer.coalesce("1", this::lookup).subscribe();
+        var staying = coalescer.coalesce("1", this::lookup).toFuture();
+
+        leaving.dispose();
+        assertFalse(cancelled.get());
+
+        result.tryEmitValue("movie 1");
+        assertEquals("movie 1", staying.join());
+    }
+
+    @Test
+    void allCallersCancel_lookupCancelled() {
+        var first = coalescer.coalesce("1", this::lookup).subscribe();
+        var second = coalescer.coalesce("1", this::lookup).subscribe();
+
+        first.dispose();
+        second.dispose();
+
+        assertTrue(cancelled.get());
+        assertEquals(0.0, meterRegistry.get(RequestCoalescer.IN_FLIGHT).gauge().value());
+
+        // the next caller starts over
+        coalescer.coalesce("1", this::lookup).subscribe();
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void waitBounded() {
+        StepVerifier.withVirtualTime(() -> coalescer.coalesce("1", this::lookup))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectErrorMessage("Movie 1 was not read within 1000ms")
+                .verify();
+
+        assertTrue(cancelled.get());
+    }
+}